@@ -0,0 +1,64 @@
+package io.github.followsclosely.toolbox.web.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Publishes files so readers see either the previous content or the complete new content, never a mix.
+ */
+final class AtomicFiles {
+
+    private AtomicFiles() {
+    }
+
+    /**
+     * Writes the bytes to a temp file next to the target, flushes them to disk and renames the
+     * temp file over the target. A crash leaves at most a stray {@code .tmp} file behind.
+     */
+    static void write(Path target, byte[] bytes) throws IOException {
+        write(target, bytes, true);
+    }
+
+    /**
+     * As {@link #write(Path, byte[])}, optionally skipping the flush for bulk copies that can simply be
+     * repeated after a crash. The rename still guarantees readers never see a partial file.
+     */
+    static void write(Path target, byte[] bytes, boolean force) throws IOException {
+        Path temp = tempFileFor(target);
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                if (force) {
+                    channel.force(true);
+                }
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Picks a random temp file name next to the target. Unlike {@link Files#createTempFile}, which restricts
+     * the file to its owner, a file created under this name gets the default permissions (subject to the
+     * umask), so caches shared between users or processes stay readable.
+     */
+    static Path tempFileFor(Path target) {
+        Path absolute = target.toAbsolutePath();
+        return absolute.resolveSibling("." + absolute.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+    }
+}
@@ -0,0 +1,24 @@
+package io.github.followsclosely.toolbox.web.cache;
+
+import org.springframework.http.HttpMethod;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.net.URI;
+
+/**
+ * Thrown in {@link DiskCachingMode#REPLAY_ONLY} mode when a request has no recorded response.
+ */
+public class CacheMissException extends IOException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public CacheMissException(String message) {
+        super(message);
+    }
+
+    public CacheMissException(HttpMethod method, URI uri, String cacheKey) {
+        this("No recorded response for " + method + " " + uri + " (cache key " + cacheKey + ")");
+    }
+}
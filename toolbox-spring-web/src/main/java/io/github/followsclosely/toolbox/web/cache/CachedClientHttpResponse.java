@@ -33,7 +33,8 @@ public class CachedClientHttpResponse implements ClientHttpResponse {
 
     @Override
     public String getStatusText() {
-        return HttpStatus.valueOf(statusCode.value()).getReasonPhrase();
+        HttpStatus status = HttpStatus.resolve(statusCode.value());
+        return status != null ? status.getReasonPhrase() : "";
     }
 
     @Override
@@ -45,4 +46,11 @@ public class CachedClientHttpResponse implements ClientHttpResponse {
         return new ByteArrayInputStream(body);
     }
 
+    /**
+     * The cached bytes themselves, for callers in this package that do not need a stream.
+     */
+    byte[] getBodyBytes() {
+        return body;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,128 @@
+package io.github.followsclosely.toolbox.web.cache;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Stores response bodies once, keyed by the SHA-256 digest of their bytes.
+ * Blobs live under {@code <root>/ab/abcdef...} so no single directory grows too large.
+ */
+@Slf4j
+class ContentAddressedBlobStore {
+
+    /**
+     * Name of the directory (relative to the cache directory) that holds the blobs.
+     */
+    static final String DIRECTORY_NAME = ".blobs";
+
+    @Getter
+    private final Path root;
+
+    ContentAddressedBlobStore(Path cacheDir) {
+        this.root = cacheDir.resolve(DIRECTORY_NAME);
+    }
+
+    /**
+     * Computes the hex encoded SHA-256 digest of the given bytes.
+     */
+    static String digest(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Stores the bytes if no blob with the same digest exists yet.
+     * An existing blob is only touched, so the garbage collector treats it as recently used.
+     *
+     * @return The digest under which the bytes are stored.
+     */
+    String write(byte[] bytes) throws IOException {
+        return write(bytes, true);
+    }
+
+    /**
+     * @param force Whether to flush a new blob to disk before publishing it.
+     * @see AtomicFiles#write(Path, byte[], boolean)
+     */
+    String write(byte[] bytes, boolean force) throws IOException {
+        String digest = digest(bytes);
+        Path blob = resolve(digest);
+        if (Files.exists(blob)) {
+            try {
+                Files.setLastModifiedTime(blob, FileTime.from(Instant.now()));
+                return digest;
+            } catch (NoSuchFileException e) {
+                // Collected in between, write it again
+            }
+        }
+
+        // Readers never see a partial blob, and concurrent writers of the same digest write the same bytes.
+        Files.createDirectories(blob.getParent());
+        AtomicFiles.write(blob, bytes, force);
+        return digest;
+    }
+
+    /**
+     * Reads the blob with the given digest.
+     *
+     * @return The stored bytes, or null if there is no such blob.
+     */
+    byte[] read(String digest) throws IOException {
+        try {
+            return Files.readAllBytes(resolve(digest));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Deletes every blob that is not in the referenced set and has not been written or
+     * touched within the grace period. The grace period protects blobs whose metadata
+     * is still being written by a concurrent request.
+     *
+     * @return The number of blobs deleted.
+     */
+    long deleteUnreferenced(Set<String> referenced, Duration gracePeriod) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+
+        FileTime cutoff = FileTime.from(Instant.now().minus(gracePeriod));
+        AtomicLong deleted = new AtomicLong();
+        try (Stream<Path> walk = Files.walk(root)) {
+            walk.filter(Files::isRegularFile)
+                    .filter(blob -> !referenced.contains(blob.getFileName().toString()))
+                    .forEach(blob -> {
+                        try {
+                            if (Files.getLastModifiedTime(blob).compareTo(cutoff) < 0 && Files.deleteIfExists(blob)) {
+                                deleted.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            log.warn("Unable to delete unreferenced blob {}", blob, e);
+                        }
+                    });
+        }
+        return deleted.get();
+    }
+
+    private Path resolve(String digest) {
+        return root.resolve(digest.substring(0, 2)).resolve(digest);
+    }
+}
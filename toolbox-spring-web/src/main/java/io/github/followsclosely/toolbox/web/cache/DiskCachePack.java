@@ -0,0 +1,421 @@
+package io.github.followsclosely.toolbox.web.cache;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A disk cache packed into one sequential, indexed file, for moving a populated cache between machines
+ * without copying millions of small files.
+ * <p>
+ * The pack starts with a header, followed by every distinct body back to back (optionally deflated, each on
+ * its own so it can be read independently) and an index of all entries with their metadata. A trailer points
+ * at the index. Identical bodies are stored once.
+ * </p>
+ * <p>
+ * A pack can be imported into a cache directory, or mounted: the bodies are memory-mapped and only the index
+ * is loaded onto the heap, so hits are served straight from the pack. A pack can be mounted beneath a cache
+ * through {@link DiskCachingConfiguration#setPackFile(String)}. Run {@link #main(String[])} for the command line.
+ * </p>
+ */
+@Slf4j
+public final class DiskCachePack {
+
+    private static final byte[] MAGIC = "TBXPACK1".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    private static final int FLAG_COMPRESSED = 1;
+    private static final int HEADER_SIZE = MAGIC.length + Integer.BYTES + Integer.BYTES;
+    private static final int TRAILER_SIZE = Long.BYTES + MAGIC.length;
+    /**
+     * Smallest possible index entry: an empty key, no metadata, offset and both lengths.
+     */
+    private static final int MIN_ENTRY_SIZE = Integer.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES;
+    /**
+     * Deflate cannot compress by more than about 1032:1, so a larger claimed length means a corrupt entry.
+     */
+    private static final int MAX_INFLATE_RATIO = 1032;
+
+    /**
+     * Size of each memory-mapped region; a single mapping cannot exceed 2GB.
+     */
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    @Getter
+    private final Path file;
+    private final MappedByteBuffer[] segments;
+    private final Map<String, Entry> index;
+
+    /**
+     * An index entry: the stored metadata of one cache key and where its body lives in the pack.
+     * A body is deflated exactly when its stored length is smaller than its length.
+     */
+    record Entry(String key, String[] metadata, long offset, int storedLength, int length) {
+
+        Properties toProperties() {
+            Properties properties = new Properties();
+            for (int i = 0; i < metadata.length; i += 2) {
+                properties.setProperty(metadata[i], metadata[i + 1]);
+            }
+            return properties;
+        }
+    }
+
+    private DiskCachePack(Path file, MappedByteBuffer[] segments, Map<String, Entry> index) {
+        this.file = file;
+        this.segments = segments;
+        this.index = index;
+    }
+
+    /**
+     * Exports every entry of a cache directory into a pack file. The pack is written next to the target
+     * and moved in place when complete.
+     *
+     * @param cacheDir The cache directory to export.
+     * @param packFile The pack file to create or replace.
+     * @param compress Whether to deflate bodies (only kept where it makes them smaller).
+     * @return The number of entries exported.
+     */
+    public static long export(Path cacheDir, Path packFile, boolean compress) throws IOException {
+        if (!Files.isDirectory(cacheDir)) {
+            throw new NoSuchFileException(cacheDir.toString(), null, "Not a cache directory");
+        }
+        DiskCacheStore store = new DiskCacheStore(DiskCachingConfiguration.forDirectory(cacheDir.toString()));
+        Files.createDirectories(packFile.toAbsolutePath().getParent());
+        Path temp = AtomicFiles.tempFileFor(packFile);
+
+        List<Entry> entries = new ArrayList<>();
+        Map<String, Entry> bodies = new HashMap<>();
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), 1 << 16))) {
+                out.write(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(compress ? FLAG_COMPRESSED : 0);
+                long[] position = {HEADER_SIZE};
+
+                store.forEachEntry((cacheKey, headerProps, bodyDigest, bodyLoader) -> {
+                    // Identical bodies are written once and shared by their entries; a blob already in the pack is not read again
+                    Entry stored = bodyDigest != null ? bodies.get(bodyDigest) : null;
+                    if (stored == null) {
+                        byte[] body = bodyLoader.load();
+                        if (body == null) {
+                            return;
+                        }
+                        String digest = bodyDigest != null ? bodyDigest : ContentAddressedBlobStore.digest(body);
+                        stored = bodies.get(digest);
+                        if (stored == null) {
+                            byte[] bytes = compress ? deflate(body) : body;
+                            if (bytes.length >= body.length) {
+                                bytes = body;
+                            }
+                            out.write(bytes);
+                            stored = new Entry(null, null, position[0], bytes.length, body.length);
+                            bodies.put(digest, stored);
+                            position[0] += bytes.length;
+                        }
+                    }
+                    entries.add(new Entry(cacheKey, metadataOf(headerProps), stored.offset(), stored.storedLength(), stored.length()));
+                });
+
+                long indexOffset = position[0];
+                out.writeInt(entries.size());
+                for (Entry entry : entries) {
+                    writeString(out, entry.key());
+                    out.writeInt(entry.metadata().length / 2);
+                    for (String value : entry.metadata()) {
+                        writeString(out, value);
+                    }
+                    out.writeLong(entry.offset());
+                    out.writeInt(entry.storedLength());
+                    out.writeInt(entry.length());
+                }
+                out.writeLong(indexOffset);
+                out.write(MAGIC);
+            }
+
+            try {
+                Files.move(temp, packFile, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, packFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        log.info("Exported {} entries ({} distinct bodies) from {} to {}", entries.size(), bodies.size(), cacheDir, packFile);
+        return entries.size();
+    }
+
+    /**
+     * Mounts a pack file: the bodies are memory-mapped and the index is loaded.
+     * The mapping stays valid until the pack is garbage collected.
+     */
+    public static DiskCachePack mount(Path packFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(packFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + TRAILER_SIZE) {
+                throw new IOException("Not a cache pack: " + packFile);
+            }
+
+            ByteBuffer header = readFully(channel, 0, HEADER_SIZE);
+            ByteBuffer trailer = readFully(channel, size - TRAILER_SIZE, TRAILER_SIZE);
+            if (!hasMagic(header, 0) || !hasMagic(trailer, Long.BYTES)) {
+                throw new IOException("Not a cache pack: " + packFile);
+            }
+            int version = header.getInt(MAGIC.length);
+            if (version != VERSION) {
+                throw new IOException("Unsupported cache pack version " + version + ": " + packFile);
+            }
+            long indexOffset = trailer.getLong(0);
+            long indexLength = size - TRAILER_SIZE - indexOffset;
+            if (indexOffset < HEADER_SIZE || indexLength < 0 || indexLength > Integer.MAX_VALUE) {
+                throw new IOException("Corrupt cache pack: " + packFile);
+            }
+
+            // Map the bodies
+            int count = (int) ((indexOffset + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+            MappedByteBuffer[] segments = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long start = i * SEGMENT_SIZE;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, indexOffset - start));
+            }
+
+            // Load the index, checking every entry stays within the bodies
+            ByteBuffer in = readFully(channel, indexOffset, (int) indexLength);
+            Map<String, Entry> index;
+            try {
+                int entryCount = in.getInt();
+                if (entryCount < 0 || entryCount > in.remaining() / MIN_ENTRY_SIZE) {
+                    throw new IOException("Corrupt cache pack: " + packFile);
+                }
+                index = new HashMap<>(entryCount * 4 / 3 + 1);
+                for (int i = 0; i < entryCount; i++) {
+                    String key = readString(in, packFile);
+                    DiskCacheStore.checkCacheKey(key);
+                    int metadataPairs = in.getInt();
+                    if (metadataPairs < 0 || metadataPairs > in.remaining() / (2 * Integer.BYTES)) {
+                        throw new IOException("Corrupt cache pack: " + packFile);
+                    }
+                    String[] metadata = new String[metadataPairs * 2];
+                    for (int m = 0; m < metadata.length; m++) {
+                        metadata[m] = readString(in, packFile);
+                    }
+                    Entry entry = new Entry(key, metadata, in.getLong(), in.getInt(), in.getInt());
+                    if (!isWithin(entry, indexOffset)) {
+                        throw new IOException("Corrupt cache pack: " + packFile);
+                    }
+                    index.put(key, entry);
+                }
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Corrupt cache pack: " + packFile, e);
+            }
+
+            log.info("Mounted {} with {} entries", packFile, index.size());
+            return new DiskCachePack(packFile, segments, index);
+        }
+    }
+
+    /**
+     * Copies every entry of this pack into a cache directory, reading the pack sequentially.
+     * Entries already in the directory are replaced.
+     *
+     * @param configuration The target cache; its directory and content addressing are used.
+     * @return The number of entries imported.
+     */
+    public long importInto(DiskCachingConfiguration configuration) throws IOException {
+        DiskCachingConfiguration target = DiskCachingConfiguration.forDirectory(configuration.getDirectory());
+        target.setContentAddressed(configuration.isContentAddressed());
+        DiskCacheStore store = new DiskCacheStore(target);
+
+        List<Entry> entries = index.values().stream()
+                .sorted(Comparator.comparingLong(Entry::offset))
+                .toList();
+        for (Entry entry : entries) {
+            store.publish(entry.key(), entry.toProperties(), read(entry), false);
+        }
+
+        log.info("Imported {} entries from {} into {}", entries.size(), file, configuration.getDirectory());
+        return entries.size();
+    }
+
+    /**
+     * @return The number of entries in the pack.
+     */
+    public int size() {
+        return index.size();
+    }
+
+    Entry find(String cacheKey) {
+        return index.get(cacheKey);
+    }
+
+    /**
+     * Reads (and if needed inflates) the body of an entry from the mapped pack.
+     */
+    byte[] read(Entry entry) throws IOException {
+        byte[] stored = new byte[entry.storedLength()];
+        long position = entry.offset();
+        int copied = 0;
+        while (copied < stored.length) {
+            MappedByteBuffer segment = segments[(int) (position / SEGMENT_SIZE)];
+            int offsetInSegment = (int) (position % SEGMENT_SIZE);
+            int length = Math.min(stored.length - copied, segment.capacity() - offsetInSegment);
+            segment.get(offsetInSegment, stored, copied, length);
+            copied += length;
+            position += length;
+        }
+        return entry.storedLength() < entry.length() ? inflate(stored, entry.length()) : stored;
+    }
+
+    /**
+     * Command line access to packs:
+     * <pre>
+     *     export &lt;cacheDir&gt; &lt;packFile&gt; [--compress]
+     *     import &lt;packFile&gt; &lt;cacheDir&gt; [--content-addressed]
+     *     list &lt;packFile&gt;
+     * </pre>
+     */
+    public static void main(String[] args) throws IOException {
+        List<String> options = Arrays.asList(args);
+        if (args.length >= 3 && args[0].equals("export")) {
+            export(Paths.get(args[1]), Paths.get(args[2]), options.contains("--compress"));
+        } else if (args.length >= 3 && args[0].equals("import")) {
+            DiskCachingConfiguration configuration = DiskCachingConfiguration.forDirectory(args[2]);
+            configuration.setContentAddressed(options.contains("--content-addressed"));
+            mount(Paths.get(args[1])).importInto(configuration);
+        } else if (args.length == 2 && args[0].equals("list")) {
+            mount(Paths.get(args[1])).index.values().stream()
+                    .sorted(Comparator.comparing(Entry::key))
+                    .forEach(entry -> System.out.println(entry.key() + "\t" + entry.length()));
+        } else {
+            System.err.println("Usage: DiskCachePack export <cacheDir> <packFile> [--compress]");
+            System.err.println("       DiskCachePack import <packFile> <cacheDir> [--content-addressed]");
+            System.err.println("       DiskCachePack list <packFile>");
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Keeps the replayed headers and portable metadata; body digests and checksums are specific to a directory.
+     */
+    private static String[] metadataOf(Properties headerProps) {
+        return headerProps.stringPropertyNames().stream()
+                .filter(name -> !name.equals(DiskCacheStore.BODY_DIGEST) && !name.equals(DiskCacheStore.BODY_CHECKSUM))
+                .sorted()
+                .flatMap(name -> Stream.of(name, headerProps.getProperty(name)))
+                .toArray(String[]::new);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in, Path packFile) throws IOException {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            throw new IOException("Corrupt cache pack: " + packFile);
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Whether an entry's body lies between the header and the index, and its lengths are consistent.
+     * A deflated body cannot expand by more than {@link #MAX_INFLATE_RATIO}.
+     */
+    private static boolean isWithin(Entry entry, long indexOffset) {
+        return entry.offset() >= HEADER_SIZE
+                && entry.storedLength() >= 0
+                && entry.storedLength() <= entry.length()
+                && entry.offset() + entry.storedLength() <= indexOffset
+                && (entry.storedLength() == entry.length() || entry.length() <= (long) entry.storedLength() * MAX_INFLATE_RATIO);
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of cache pack");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static boolean hasMagic(ByteBuffer buffer, int offset) {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (buffer.get(offset + i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] bytes, int length) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes);
+            byte[] out = new byte[length];
+            int inflated = 0;
+            while (inflated < length && !inflater.finished()) {
+                int count = inflater.inflate(out, inflated, length - inflated);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += count;
+            }
+            if (inflated != length) {
+                throw new IOException("Corrupt cache pack entry");
+            }
+            return out;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt cache pack entry", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,551 @@
+package io.github.followsclosely.toolbox.web.cache;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * The on-disk layout shared by the blocking and reactive caches. Each key is stored as a
+ * {@code <key>-headers.properties} file holding the replayed headers plus cache bookkeeping,
+ * and either a {@code <key>-body.json} file or a reference to a content-addressed blob.
+ * All methods block on disk I/O.
+ * <p>
+ * Files are published atomically (temp file, then rename) with the headers file last, so it acts as the
+ * commit point of an entry. Writers of the same entry are serialized through striped locks shared by all stores; readers never
+ * lock, and instead check the body against the checksum recorded in the headers, re-reading on a mismatch.
+ * </p>
+ * <p>
+ * A {@link DiskCachePack} may be mounted beneath the directory as a read-only layer; it is consulted
+ * whenever the directory has no entry for a key.
+ * </p>
+ */
+@Slf4j
+class DiskCacheStore {
+
+    static final String BODY_SUFFIX = "-body.json";
+    static final String HEADERS_SUFFIX = "-headers.properties";
+
+    /**
+     * Prefix of the cache bookkeeping entries stored alongside the headers. These are never replayed as headers.
+     */
+    static final String METADATA_PREFIX = "toolbox.cache.";
+    static final String BODY_DIGEST = METADATA_PREFIX + "body-digest";
+    static final String STATUS = METADATA_PREFIX + "status";
+    static final String STORED_AT = METADATA_PREFIX + "stored-at";
+    static final String BODY_CHECKSUM = METADATA_PREFIX + "body-crc32c";
+
+    /**
+     * Number of writer locks; entries are spread across them by hash.
+     */
+    private static final int LOCK_STRIPES = 64;
+
+    /**
+     * Writer locks shared by every store in this JVM, striped by the absolute path of an entry, so the blocking
+     * and reactive caches on one directory serialize their writers too.
+     */
+    private static final Lock[] LOCKS = new Lock[LOCK_STRIPES];
+
+    static {
+        for (int i = 0; i < LOCKS.length; i++) {
+            LOCKS[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * How often a reader re-reads an entry that was replaced while it was being read.
+     */
+    private static final int READ_ATTEMPTS = 3;
+
+    /**
+     * Returned by a read whose body does not belong to its headers because the entry was replaced in between.
+     */
+    private static final CachedClientHttpResponse REPLACED = new CachedClientHttpResponse(HttpStatusCode.valueOf(200), new HttpHeaders(), new byte[0]);
+
+    @Getter
+    private final Path cacheDir;
+    private final boolean contentAddressed;
+    private final ContentAddressedBlobStore blobStore;
+    private final Duration clientErrorTtl;
+    private final Duration serverErrorTtl;
+    private final DiskCachingMode mode;
+    /**
+     * The read-only pack beneath the directory, or null if none is mounted.
+     */
+    private final DiskCachePack pack;
+    /**
+     * Every directory entry, preloaded in {@link DiskCachingMode#REPLAY_ONLY} mode; null otherwise.
+     */
+    private final Map<String, CachedClientHttpResponse> replayIndex;
+
+    DiskCacheStore(DiskCachingConfiguration configuration) {
+        this.cacheDir = Paths.get(configuration.getDirectory());
+        this.contentAddressed = configuration.isContentAddressed();
+        this.blobStore = new ContentAddressedBlobStore(this.cacheDir);
+        this.clientErrorTtl = configuration.getClientErrorTtl();
+        this.serverErrorTtl = configuration.getServerErrorTtl();
+        this.mode = configuration.getMode();
+        try {
+            Files.createDirectories(this.cacheDir);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create cache directory: " + configuration.getDirectory(), e);
+        }
+        this.pack = configuration.getPackFile() != null ? mountPack(Paths.get(configuration.getPackFile())) : null;
+        this.replayIndex = mode == DiskCachingMode.REPLAY_ONLY ? loadReplayIndex() : null;
+    }
+
+    /**
+     * Derives the cache key for a request: the hint if one is given, otherwise a digest of method and URI.
+     */
+    static String createCacheKey(String hint, HttpMethod method, URI uri) {
+        if (hint != null && !hint.isBlank()) {
+            return hint;
+        }
+        String rawKey = method + " " + uri;
+        return DigestUtils.md5DigestAsHex(rawKey.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Loads a cached response.
+     *
+     * @return The cached response, or null if there is no entry or it has expired.
+     */
+    CachedClientHttpResponse read(String cacheKey) throws IOException {
+        CachedClientHttpResponse cached = read(resolve(cacheKey, HEADERS_SUFFIX), cacheKey, true, new HashMap<>());
+        if (cached == null && pack != null) {
+            cached = readFromPack(cacheKey, true);
+        }
+        return cached;
+    }
+
+    /**
+     * Loads a recorded response in {@link DiskCachingMode#REPLAY_ONLY} mode: from the preloaded directory
+     * entries, then from the mounted pack. Recorded error responses are returned regardless of their TTL.
+     *
+     * @return The recorded response, or null if there is none.
+     */
+    CachedClientHttpResponse readRecorded(String cacheKey) throws IOException {
+        CachedClientHttpResponse recorded = readPreloaded(cacheKey);
+        if (recorded == null) {
+            recorded = readRecordedFromPack(cacheKey);
+        }
+        return recorded;
+    }
+
+    /**
+     * Looks a key up in the preloaded directory entries only. Never touches the disk.
+     *
+     * @return The recorded response, or null if it was not preloaded.
+     */
+    CachedClientHttpResponse readPreloaded(String cacheKey) {
+        return replayIndex != null ? replayIndex.get(cacheKey) : null;
+    }
+
+    /**
+     * Loads a recorded response from the mounted pack, regardless of its TTL. Reading the mapping may
+     * fault pages in from disk and inflate the body.
+     *
+     * @return The recorded response, or null if no pack is mounted or it has no such entry.
+     */
+    CachedClientHttpResponse readRecordedFromPack(String cacheKey) throws IOException {
+        return pack != null ? readFromPack(cacheKey, false) : null;
+    }
+
+    boolean hasPack() {
+        return pack != null;
+    }
+
+    /**
+     * Visits every directory entry in key order, with the metadata as stored. TTLs are not applied.
+     * Bodies are only read when the visitor asks for them, so a blob shared by many entries need not be
+     * read for each of them.
+     */
+    void forEachEntry(EntryVisitor visitor) throws IOException {
+        List<Path> headersFiles = new ArrayList<>(listHeadersFiles());
+        headersFiles.sort(null);
+        for (Path headersFile : headersFiles) {
+            String cacheKey = toCacheKey(headersFile);
+            Properties headerProps = loadProperties(headersFile);
+            if (headerProps != null) {
+                visitor.visit(cacheKey, headerProps, headerProps.getProperty(BODY_DIGEST), () -> readBody(cacheKey, headerProps, new HashMap<>()));
+            }
+        }
+    }
+
+    interface EntryVisitor {
+        /**
+         * @param bodyDigest The digest of the content-addressed body, or null if the body is stored next to the headers.
+         * @param body       Loads the body, or returns null if it no longer exists.
+         */
+        void visit(String cacheKey, Properties headerProps, String bodyDigest, BodyLoader body) throws IOException;
+    }
+
+    interface BodyLoader {
+        byte[] load() throws IOException;
+    }
+
+    /**
+     * Loads every entry into memory, keyed by cache key, for serving a recorded cache without disk I/O.
+     * Expired error responses are included, and bodies shared through a blob are loaded only once.
+     */
+    Map<String, CachedClientHttpResponse> readAll() throws IOException {
+        Map<String, CachedClientHttpResponse> entries = new HashMap<>();
+        Map<String, byte[]> blobs = new HashMap<>();
+        for (Path headersFile : listHeadersFiles()) {
+            String cacheKey = toCacheKey(headersFile);
+            CachedClientHttpResponse entry = read(headersFile, cacheKey, false, blobs);
+            if (entry != null) {
+                entries.put(cacheKey, entry);
+            }
+        }
+        log.info("Loaded {} cached responses ({} distinct blobs) from {}", entries.size(), blobs.size(), cacheDir);
+        return entries;
+    }
+
+    private Map<String, CachedClientHttpResponse> loadReplayIndex() {
+        try {
+            return Map.copyOf(readAll());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load recorded responses from: " + cacheDir, e);
+        }
+    }
+
+    private CachedClientHttpResponse read(Path headersFile, String cacheKey, boolean honourTtl, Map<String, byte[]> blobs) throws IOException {
+        for (int attempt = 1; attempt <= READ_ATTEMPTS; attempt++) {
+            Properties headerProps = loadProperties(headersFile);
+            if (headerProps == null) {
+                return null;
+            }
+            CachedClientHttpResponse cached = read(cacheKey, headerProps, honourTtl, blobs);
+            if (cached != REPLACED) {
+                return cached;
+            }
+            log.debug("Cache entry {} was replaced while reading it (attempt {})", cacheKey, attempt);
+        }
+        return null;
+    }
+
+    /**
+     * @return The entry, null if it does not exist or has expired, or {@link #REPLACED} if the body does not
+     * belong to these headers.
+     */
+    private CachedClientHttpResponse read(String cacheKey, Properties headerProps, boolean honourTtl, Map<String, byte[]> blobs) throws IOException {
+        HttpStatusCode statusCode = statusOf(headerProps);
+        if (honourTtl && isExpired(statusCode, headerProps.getProperty(STORED_AT))) {
+            return null;
+        }
+
+        byte[] cachedBody = readBody(cacheKey, headerProps, blobs);
+        if (cachedBody == null) {
+            return null;
+        }
+        String checksum = headerProps.getProperty(BODY_CHECKSUM);
+        if (checksum != null && !checksum.equals(checksum(cachedBody))) {
+            return REPLACED;
+        }
+
+        return toResponse(statusCode, headerProps, cachedBody);
+    }
+
+    private CachedClientHttpResponse readFromPack(String cacheKey, boolean honourTtl) throws IOException {
+        DiskCachePack.Entry entry = pack.find(cacheKey);
+        if (entry == null) {
+            return null;
+        }
+        Properties headerProps = entry.toProperties();
+        HttpStatusCode statusCode = statusOf(headerProps);
+        if (honourTtl && isExpired(statusCode, headerProps.getProperty(STORED_AT))) {
+            return null;
+        }
+        return toResponse(statusCode, headerProps, pack.read(entry));
+    }
+
+    /**
+     * Loads the body of an entry from its blob or body file.
+     *
+     * @return The body, or null if it does not exist (any more).
+     */
+    private byte[] readBody(String cacheKey, Properties headerProps, Map<String, byte[]> blobs) throws IOException {
+        String digest = headerProps.getProperty(BODY_DIGEST);
+        if (digest == null) {
+            return readIfExists(resolve(cacheKey, BODY_SUFFIX));
+        }
+        byte[] cachedBody = blobs.get(digest);
+        if (cachedBody == null && (cachedBody = blobStore.read(digest)) != null) {
+            blobs.put(digest, cachedBody);
+        }
+        return cachedBody;
+    }
+
+    private static HttpStatusCode statusOf(Properties headerProps) {
+        // Entries written before status codes were recorded are all successful responses
+        return HttpStatusCode.valueOf(Integer.parseInt(headerProps.getProperty(STATUS, "200")));
+    }
+
+    private static CachedClientHttpResponse toResponse(HttpStatusCode statusCode, Properties headerProps, byte[] cachedBody) {
+        HttpHeaders headers = new HttpHeaders();
+        headerProps.forEach((k, v) -> {
+            if (!((String) k).startsWith(METADATA_PREFIX)) {
+                headers.add((String) k, (String) v);
+            }
+        });
+
+        return new CachedClientHttpResponse(statusCode, headers, cachedBody);
+    }
+
+    /**
+     * Saves a response, unless its status class is configured not to be cached. When recording, such a
+     * response still replaces the previous entry, which is deleted.
+     */
+    void write(String cacheKey, HttpStatusCode statusCode, HttpHeaders headers, byte[] body) throws IOException {
+        if (timeToLive(statusCode).isZero()) {
+            if (mode == DiskCachingMode.RECORD) {
+                delete(cacheKey);
+            }
+            return;
+        }
+
+        // Save key headers (Content-Type is crucial; add others if needed)
+        Properties headerProps = getProperties(headers);
+        // Add more headers if your API uses them (e.g., Cache-Control, ETag)
+        headerProps.setProperty(STATUS, String.valueOf(statusCode.value()));
+        headerProps.setProperty(STORED_AT, String.valueOf(System.currentTimeMillis()));
+
+        publish(cacheKey, headerProps, body, true);
+
+        //log.info("Saved response to disk (body + headers)");
+    }
+
+    /**
+     * Atomically publishes an entry with the given metadata and replayed headers, as-is.
+     *
+     * @param force Whether to flush each file to disk before publishing it; bulk imports that can be
+     *              repeated after a crash skip this.
+     */
+    void publish(String cacheKey, Properties headerProps, byte[] body, boolean force) throws IOException {
+        Path bodyFile = resolve(cacheKey, BODY_SUFFIX);
+        Path headersFile = resolve(cacheKey, HEADERS_SUFFIX);
+        Files.createDirectories(bodyFile.getParent());
+        headerProps.remove(BODY_DIGEST);
+        headerProps.setProperty(BODY_CHECKSUM, checksum(body));
+
+        Lock lock = lockFor(headersFile);
+        lock.lock();
+        try {
+            // Save body, either as a shared blob or next to the headers
+            if (contentAddressed) {
+                headerProps.setProperty(BODY_DIGEST, blobStore.write(body, force));
+            } else {
+                AtomicFiles.write(bodyFile, body, force);
+            }
+
+            // Publishing the headers commits the entry
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            headerProps.store(os, "Cached response headers");
+            AtomicFiles.write(headersFile, os.toByteArray(), force);
+
+            if (contentAddressed) {
+                Files.deleteIfExists(bodyFile);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes an entry from the directory, headers first so readers never see a partial entry.
+     * Its blob, if any, is left to the garbage collector.
+     */
+    void delete(String cacheKey) throws IOException {
+        Path headersFile = resolve(cacheKey, HEADERS_SUFFIX);
+        Lock lock = lockFor(headersFile);
+        lock.lock();
+        try {
+            if (Files.deleteIfExists(headersFile)) {
+                log.debug("Deleted recorded entry {}", cacheKey);
+            }
+            Files.deleteIfExists(resolve(cacheKey, BODY_SUFFIX));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes content-addressed blobs that are no longer referenced by any cached entry.
+     *
+     * @param gracePeriod Blobs written or reused within this period are kept even if unreferenced.
+     * @return The number of blobs deleted.
+     */
+    long collectGarbage(Duration gracePeriod) throws IOException {
+        Set<String> referenced = new HashSet<>();
+        for (Path headersFile : listHeadersFiles()) {
+            // An unreadable headers file aborts the collection, keeping everything it might reference.
+            Properties headerProps = loadProperties(headersFile);
+            String digest = headerProps != null ? headerProps.getProperty(BODY_DIGEST) : null;
+            if (digest != null) {
+                referenced.add(digest);
+            }
+        }
+
+        long deleted = blobStore.deleteUnreferenced(referenced, gracePeriod);
+        log.info("Removed {} unreferenced blobs, {} still referenced", deleted, referenced.size());
+        return deleted;
+    }
+
+    private List<Path> listHeadersFiles() throws IOException {
+        try (Stream<Path> walk = Files.walk(cacheDir)) {
+            return walk.filter(path -> !path.startsWith(blobStore.getRoot()))
+                    .filter(path -> path.getFileName().toString().endsWith(HEADERS_SUFFIX))
+                    .toList();
+        }
+    }
+
+    /**
+     * Turns a headers file back into its cache key, using '/' as the separator as hints do.
+     */
+    private String toCacheKey(Path headersFile) {
+        Path relative = cacheDir.relativize(headersFile);
+        StringBuilder cacheKey = new StringBuilder();
+        for (Path element : relative) {
+            if (!cacheKey.isEmpty()) {
+                cacheKey.append('/');
+            }
+            cacheKey.append(element);
+        }
+        return cacheKey.substring(0, cacheKey.length() - HEADERS_SUFFIX.length());
+    }
+
+    /**
+     * Returns how long a response with the given status may be replayed from disk.
+     * Successful responses never expire, so they report {@link ChronoUnit#FOREVER}.
+     */
+    private Duration timeToLive(HttpStatusCode statusCode) {
+        if (statusCode.is4xxClientError()) {
+            return clientErrorTtl;
+        } else if (statusCode.is5xxServerError()) {
+            return serverErrorTtl;
+        }
+        return ChronoUnit.FOREVER.getDuration();
+    }
+
+    private boolean isExpired(HttpStatusCode statusCode, String storedAt) {
+        if (!statusCode.isError()) {
+            return false;
+        }
+        if (storedAt == null) {
+            return true;
+        }
+        long age = System.currentTimeMillis() - Long.parseLong(storedAt);
+        return age >= timeToLive(statusCode).toMillis();
+    }
+
+    /**
+     * Resolves a file of the given entry, rejecting keys that would land outside the cache directory
+     * (such as {@code ../x} or absolute paths) or inside the blob store.
+     */
+    private Path resolve(String cacheKey, String suffix) throws IOException {
+        return resolve(cacheDir, cacheKey, suffix);
+    }
+
+    /**
+     * Checks that a key from an untrusted source, such as a pack file, is a valid cache key.
+     *
+     * @throws IOException if the key would not resolve to a file within a cache directory.
+     */
+    static void checkCacheKey(String cacheKey) throws IOException {
+        resolve(Paths.get(""), cacheKey, HEADERS_SUFFIX);
+    }
+
+    private static Path resolve(Path directory, String cacheKey, String suffix) throws IOException {
+        Path root = directory.toAbsolutePath().normalize();
+        Path file;
+        try {
+            file = root.resolve(cacheKey + suffix).normalize();
+        } catch (InvalidPathException e) {
+            throw new IOException("Invalid cache key: " + cacheKey, e);
+        }
+        if (!file.startsWith(root) || file.startsWith(root.resolve(ContentAddressedBlobStore.DIRECTORY_NAME))) {
+            throw new IOException("Cache key resolves outside the cache directory: " + cacheKey);
+        }
+        return file;
+    }
+
+    private static String checksum(byte[] bytes) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes);
+        return Long.toHexString(crc.getValue());
+    }
+
+    private static DiskCachePack mountPack(Path packFile) {
+        try {
+            return DiskCachePack.mount(packFile);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to mount pack file: " + packFile, e);
+        }
+    }
+
+    private static Lock lockFor(Path headersFile) {
+        int hash = headersFile.hashCode();
+        return LOCKS[(hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1)];
+    }
+
+    /**
+     * @return The properties, or null if the file does not exist.
+     */
+    private static Properties loadProperties(Path file) throws IOException {
+        byte[] bytes = readIfExists(file);
+        if (bytes == null) {
+            return null;
+        }
+        Properties properties = new Properties();
+        properties.load(new ByteArrayInputStream(bytes));
+        return properties;
+    }
+
+    private static byte[] readIfExists(Path file) throws IOException {
+        try {
+            return Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static Properties getProperties(HttpHeaders origHeaders) {
+        Properties headerProps = new Properties();
+        String contentType = origHeaders.getFirst(HttpHeaders.CONTENT_TYPE);
+        if (contentType != null) {
+            headerProps.setProperty(HttpHeaders.CONTENT_TYPE, contentType);
+        }
+        String contentLength = origHeaders.getFirst(HttpHeaders.CONTENT_LENGTH);
+        if (contentLength != null) {
+            headerProps.setProperty(HttpHeaders.CONTENT_LENGTH, contentLength);
+        }
+        return headerProps;
+    }
+}
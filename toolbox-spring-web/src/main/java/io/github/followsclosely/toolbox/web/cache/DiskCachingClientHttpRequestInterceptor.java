@@ -4,58 +4,75 @@ import io.github.followsclosely.toolbox.web.limiter.ApiRateLimiter;
 import io.github.followsclosely.toolbox.web.limiter.ApiRateLimiterConfiguration;
 import io.github.followsclosely.toolbox.web.limiter.GenericApiRateLimiter;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpRequest;
-import org.springframework.http.HttpStatusCode;
 import org.springframework.http.client.ClientHttpRequestExecution;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
 import org.springframework.http.client.ClientHttpResponse;
-import org.springframework.util.DigestUtils;
 import org.springframework.util.StreamUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.Properties;
+import java.time.Duration;
 
 /**
  * A ClientHttpRequestInterceptor that caches HTTP responses on disk.
  * It saves both the response body and key headers to files in a specified cache directory.
  * On subsequent requests, it checks for cached responses and serves them if available.
  * Optionally integrates with an ApiRateLimiter to manage request rates.
+ * <p>
+ * In content-addressed mode (see {@link DiskCachingConfiguration#isContentAddressed()}) each body is
+ * stored once under a digest of its bytes, and the headers file of every key that returned those bytes
+ * points at the shared blob. Blobs that are no longer referenced are removed by {@link #collectGarbage()}.
+ * </p>
+ * <p>
+ * The original status code is stored with every entry and replayed on a hit. Error responses are
+ * negatively cached: 4xx and 5xx entries are only served for their configured TTL, after which the
+ * request goes upstream again. Successful responses are cached until removed.
+ * </p>
+ * <p>
+ * The {@link DiskCachingMode} decides how the network is used: read-through (the default), record,
+ * which always fetches and overwrites, or replay-only, which serves a recorded cache from memory and
+ * throws a {@link CacheMissException} instead of calling the network.
+ * </p>
+ * <p>
+ * A {@link DiskCachePack} can be mounted beneath the directory through
+ * {@link DiskCachingConfiguration#setPackFile(String)}; hits are then served straight from the pack.
+ * </p>
  */
 @Slf4j
 public class DiskCachingClientHttpRequestInterceptor implements ClientHttpRequestInterceptor {
 
-    private final Path cacheDir;
+    /**
+     * Unreferenced blobs younger than this are kept, as their headers file may still be in flight.
+     */
+    public static final Duration DEFAULT_GC_GRACE_PERIOD = Duration.ofMinutes(5);
+
+    private final DiskCacheStore store;
     private final ApiRateLimiter rateLimiter;
+    private final DiskCachingMode mode;
 
     public DiskCachingClientHttpRequestInterceptor(String cacheDirectory) {
         this(cacheDirectory, null);
     }
 
     public DiskCachingClientHttpRequestInterceptor(DiskCachingConfiguration configuration) {
-        this(configuration.getDirectory(), null);
+        this(configuration, (ApiRateLimiter) null);
     }
 
     public DiskCachingClientHttpRequestInterceptor(
             DiskCachingConfiguration diskConfig,
             ApiRateLimiterConfiguration rateConfig) {
-        this(diskConfig.getDirectory(), new GenericApiRateLimiter(rateConfig));
+        this(diskConfig, new GenericApiRateLimiter(rateConfig));
     }
 
     public DiskCachingClientHttpRequestInterceptor(String cacheDirectory, ApiRateLimiter rateLimiter) {
-        this.cacheDir = Paths.get(cacheDirectory);
+        this(DiskCachingConfiguration.forDirectory(cacheDirectory), rateLimiter);
+    }
+
+    public DiskCachingClientHttpRequestInterceptor(DiskCachingConfiguration configuration, ApiRateLimiter rateLimiter) {
+        this.store = new DiskCacheStore(configuration);
         this.rateLimiter = rateLimiter;
-        try {
-            Files.createDirectories(this.cacheDir);
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to create cache directory: " + cacheDirectory, e);
-        }
+        this.mode = configuration.getMode();
     }
 
     @Override
@@ -64,28 +81,23 @@ public class DiskCachingClientHttpRequestInterceptor implements ClientHttpReques
             byte[] body,
             ClientHttpRequestExecution execution) throws IOException {
 
-        String cacheKey = createCacheKey(request);
-        Path bodyFile = cacheDir.resolve(cacheKey + "-body.json");
-        Path headersFile = cacheDir.resolve(cacheKey + "-headers.properties");
+        String cacheKey = DiskCacheStore.createCacheKey(DiskCachingHint.get(), request.getMethod(), request.getURI());
 
-        // Cache HIT: load body + headers from disk
-        if (Files.exists(bodyFile) && Files.exists(headersFile)) {
-            //log.info("Cache HIT (disk): {} {}", request.getMethod(), request.getURI());
-
-            byte[] cachedBody = Files.readAllBytes(bodyFile);
-
-            Properties headerProps = new Properties();
-            try (InputStream is = Files.newInputStream(headersFile)) {
-                headerProps.load(is);
+        // Replay: serve from memory or the mounted pack, never from the network
+        if (mode == DiskCachingMode.REPLAY_ONLY) {
+            ClientHttpResponse recorded = store.readRecorded(cacheKey);
+            if (recorded == null) {
+                throw new CacheMissException(request.getMethod(), request.getURI(), cacheKey);
             }
-
-            HttpHeaders headers = new HttpHeaders();
-            headerProps.forEach((k, v) -> headers.add((String) k, (String) v));
-
-            return new CachedClientHttpResponse(HttpStatusCode.valueOf(200), headers, cachedBody);
+            return recorded;
         }
 
-        Files.createDirectories(bodyFile.getParent());
+        // Cache HIT: load body + headers from disk (skipped when recording)
+        ClientHttpResponse cached = mode != DiskCachingMode.RECORD ? store.read(cacheKey) : null;
+        if (cached != null) {
+            //log.info("Cache HIT (disk): {} {}", request.getMethod(), request.getURI());
+            return cached;
+        }
 
         // If there is a rate limiter, wait as needed before making real request
         if (rateLimiter != null) {
@@ -102,18 +114,7 @@ public class DiskCachingClientHttpRequestInterceptor implements ClientHttpReques
             responseBodyBytes = StreamUtils.copyToByteArray(is);
         }
 
-        // Save body
-        Files.write(bodyFile, responseBodyBytes);
-
-        // Save key headers (Content-Type is crucial; add others if needed)
-        Properties headerProps = getProperties(realResponse);
-        // Add more headers if your API uses them (e.g., Cache-Control, ETag)
-
-        try (OutputStream os = Files.newOutputStream(headersFile)) {
-            headerProps.store(os, "Cached response headers");
-        }
-
-        //log.info("Saved response to disk (body + headers)");
+        store.write(cacheKey, realResponse.getStatusCode(), realResponse.getHeaders(), responseBodyBytes);
 
         // If there is a rate limiter, reset last call time after the real request
         if (rateLimiter != null) {
@@ -128,26 +129,23 @@ public class DiskCachingClientHttpRequestInterceptor implements ClientHttpReques
         );
     }
 
-    private Properties getProperties(ClientHttpResponse realResponse) {
-        Properties headerProps = new Properties();
-        HttpHeaders origHeaders = realResponse.getHeaders();
-        String contentType = origHeaders.getFirst(HttpHeaders.CONTENT_TYPE);
-        if (contentType != null) {
-            headerProps.setProperty(HttpHeaders.CONTENT_TYPE, contentType);
-        }
-        String contentLength = origHeaders.getFirst(HttpHeaders.CONTENT_LENGTH);
-        if (contentLength != null) {
-            headerProps.setProperty(HttpHeaders.CONTENT_LENGTH, contentLength);
-        }
-        return headerProps;
+    /**
+     * Deletes content-addressed blobs that are no longer referenced by any cached entry,
+     * keeping those written within the {@link #DEFAULT_GC_GRACE_PERIOD}.
+     *
+     * @return The number of blobs deleted.
+     */
+    public long collectGarbage() throws IOException {
+        return collectGarbage(DEFAULT_GC_GRACE_PERIOD);
     }
 
-    private String createCacheKey(HttpRequest request) {
-        String hint = DiskCachingHint.get();
-        if (hint != null && !hint.isBlank()) {
-            return hint;
-        }
-        String rawKey = request.getMethod() + " " + request.getURI();
-        return DigestUtils.md5DigestAsHex(rawKey.getBytes(StandardCharsets.UTF_8));
+    /**
+     * Deletes content-addressed blobs that are no longer referenced by any cached entry.
+     *
+     * @param gracePeriod Blobs written or reused within this period are kept even if unreferenced.
+     * @return The number of blobs deleted.
+     */
+    public long collectGarbage(Duration gracePeriod) throws IOException {
+        return store.collectGarbage(gracePeriod);
     }
-}
\ No newline at end of file
+}
@@ -2,8 +2,40 @@ package io.github.followsclosely.toolbox.web.cache;
 
 import lombok.Data;
 
+import java.time.Duration;
+
 @Data
 public class DiskCachingConfiguration {
     private boolean enabled = true;
     private String directory = "./api-cache";
+    private DiskCachingMode mode = DiskCachingMode.READ_THROUGH;
+    /**
+     * Optional pack file (see {@link DiskCachePack}) mounted read-only beneath the directory.
+     * Entries in the directory take precedence over entries in the pack.
+     */
+    private String packFile;
+    /**
+     * When true, bodies are stored once under a digest of their bytes and the
+     * per-key headers file points at the shared blob.
+     */
+    private boolean contentAddressed = false;
+    /**
+     * How long a cached 4xx response is replayed before the request goes upstream again.
+     * {@link Duration#ZERO} disables caching of client errors.
+     */
+    private Duration clientErrorTtl = Duration.ofMinutes(5);
+    /**
+     * How long a cached 5xx response is replayed, damping retries against a failing upstream.
+     * {@link Duration#ZERO} disables caching of server errors.
+     */
+    private Duration serverErrorTtl = Duration.ofSeconds(10);
+
+    /**
+     * Creates a configuration with default settings that caches into the given directory.
+     */
+    public static DiskCachingConfiguration forDirectory(String directory) {
+        DiskCachingConfiguration configuration = new DiskCachingConfiguration();
+        configuration.setDirectory(directory);
+        return configuration;
+    }
 }
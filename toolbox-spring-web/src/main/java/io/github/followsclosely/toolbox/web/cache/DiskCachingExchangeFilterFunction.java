@@ -0,0 +1,162 @@
+package io.github.followsclosely.toolbox.web.cache;
+
+import io.github.followsclosely.toolbox.web.limiter.ApiRateLimiter;
+import io.github.followsclosely.toolbox.web.limiter.ApiRateLimiterConfiguration;
+import io.github.followsclosely.toolbox.web.limiter.ApiRateLimiterExchangeFilterFunction;
+import io.github.followsclosely.toolbox.web.limiter.GenericApiRateLimiter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * The WebClient counterpart of {@link DiskCachingClientHttpRequestInterceptor}. It reads and writes the
+ * same on-disk layout, so both can share a cache directory.
+ * <p>
+ * Disk I/O runs on a bounded I/O scheduler ({@link Schedulers#boundedElastic()} by default) and the
+ * optional rate limiter delays with a timer, so no event-loop thread is blocked. As a thread-local
+ * does not follow a reactive request, the cache hint is taken from the {@link DiskCachingHint#ATTRIBUTE}
+ * request attribute instead.
+ * </p>
+ * <p>
+ * The {@link DiskCachingMode} applies as for the interceptor; in replay-only mode hits are served from
+ * memory without any scheduler hop, reads from a mounted pack (which may fault pages in and inflate bodies) run on
+ * the I/O scheduler, and a miss fails with a {@link CacheMissException}.
+ * </p>
+ */
+@Slf4j
+public class DiskCachingExchangeFilterFunction implements ExchangeFilterFunction {
+
+    private final DiskCacheStore store;
+    private final ApiRateLimiterExchangeFilterFunction rateLimiter;
+    private final Scheduler ioScheduler;
+    private final DiskCachingMode mode;
+    private final ExchangeStrategies strategies;
+
+    public DiskCachingExchangeFilterFunction(String cacheDirectory) {
+        this(DiskCachingConfiguration.forDirectory(cacheDirectory));
+    }
+
+    public DiskCachingExchangeFilterFunction(DiskCachingConfiguration configuration) {
+        this(configuration, (ApiRateLimiter) null);
+    }
+
+    public DiskCachingExchangeFilterFunction(
+            DiskCachingConfiguration diskConfig,
+            ApiRateLimiterConfiguration rateConfig) {
+        this(diskConfig, new GenericApiRateLimiter(rateConfig));
+    }
+
+    public DiskCachingExchangeFilterFunction(DiskCachingConfiguration configuration, ApiRateLimiter rateLimiter) {
+        this(configuration, rateLimiter, Schedulers.boundedElastic());
+    }
+
+    public DiskCachingExchangeFilterFunction(
+            DiskCachingConfiguration configuration,
+            ApiRateLimiter rateLimiter,
+            Scheduler ioScheduler) {
+        this(configuration, rateLimiter, ioScheduler, ExchangeStrategies.withDefaults());
+    }
+
+    /**
+     * @param configuration The cache configuration.
+     * @param rateLimiter   The limiter applied to cache misses, or null for none.
+     * @param ioScheduler   The scheduler disk reads and writes are performed on.
+     * @param strategies    The codecs cache hits are decoded with; pass the WebClient's own strategies
+     *                      so hits decode like misses (e.g. custom Jackson settings or a raised maxInMemorySize).
+     */
+    public DiskCachingExchangeFilterFunction(
+            DiskCachingConfiguration configuration,
+            ApiRateLimiter rateLimiter,
+            @NonNull Scheduler ioScheduler,
+            @NonNull ExchangeStrategies strategies) {
+        this.strategies = strategies;
+        this.store = new DiskCacheStore(configuration);
+        this.rateLimiter = rateLimiter != null ? new ApiRateLimiterExchangeFilterFunction(rateLimiter) : null;
+        this.ioScheduler = ioScheduler;
+        this.mode = configuration.getMode();
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        String hint = request.attribute(DiskCachingHint.ATTRIBUTE).map(Object::toString).orElse(null);
+        String cacheKey = DiskCacheStore.createCacheKey(hint, request.method(), request.url());
+
+        // Replay: serve from memory inline, or from the memory-mapped pack on the I/O scheduler, never from the network
+        if (mode == DiskCachingMode.REPLAY_ONLY) {
+            Mono<CachedClientHttpResponse> recorded = Mono.justOrEmpty(store.readPreloaded(cacheKey));
+            if (store.hasPack()) {
+                recorded = recorded.switchIfEmpty(Mono.fromCallable(() -> store.readRecordedFromPack(cacheKey)).subscribeOn(ioScheduler));
+            }
+            return recorded.map(this::toClientResponse)
+                    .switchIfEmpty(Mono.error(() -> new CacheMissException(request.method(), request.url(), cacheKey)));
+        }
+        if (mode == DiskCachingMode.RECORD) {
+            return Mono.defer(() -> exchangeAndStore(request, next, cacheKey));
+        }
+
+        // Cache HIT: load body + headers from disk, Cache MISS: real request
+        return Mono.fromCallable(() -> store.read(cacheKey))
+                .subscribeOn(ioScheduler)
+                .map(this::toClientResponse)
+                .switchIfEmpty(Mono.defer(() -> exchangeAndStore(request, next, cacheKey)));
+    }
+
+    /**
+     * Deletes content-addressed blobs that are no longer referenced by any cached entry, keeping those
+     * written within the {@link DiskCachingClientHttpRequestInterceptor#DEFAULT_GC_GRACE_PERIOD}.
+     *
+     * @return The number of blobs deleted.
+     */
+    public Mono<Long> collectGarbage() {
+        return collectGarbage(DiskCachingClientHttpRequestInterceptor.DEFAULT_GC_GRACE_PERIOD);
+    }
+
+    /**
+     * Deletes content-addressed blobs that are no longer referenced by any cached entry.
+     *
+     * @param gracePeriod Blobs written or reused within this period are kept even if unreferenced.
+     * @return The number of blobs deleted.
+     */
+    public Mono<Long> collectGarbage(Duration gracePeriod) {
+        return Mono.fromCallable(() -> store.collectGarbage(gracePeriod)).subscribeOn(ioScheduler);
+    }
+
+    private Mono<ClientResponse> exchangeAndStore(ClientRequest request, ExchangeFunction next, String cacheKey) {
+        Mono<ClientResponse> exchange = rateLimiter != null ? rateLimiter.filter(request, next) : next.exchange(request);
+
+        // Read body once, save it, then hand out a copy of the real response (with original headers)
+        return exchange.flatMap(response -> response.bodyToMono(byte[].class)
+                .defaultIfEmpty(new byte[0])
+                .flatMap(bytes -> Mono.fromCallable(() -> save(cacheKey, response, bytes)).subscribeOn(ioScheduler))
+                .map(bytes -> response.mutate().body(body(bytes)).build()));
+    }
+
+    private byte[] save(String cacheKey, ClientResponse response, byte[] bytes) throws IOException {
+        store.write(cacheKey, response.statusCode(), response.headers().asHttpHeaders(), bytes);
+        return bytes;
+    }
+
+    private ClientResponse toClientResponse(CachedClientHttpResponse cached) {
+        return ClientResponse.create(cached.getStatusCode(), strategies)
+                .headers(headers -> headers.addAll(cached.getHeaders()))
+                .body(body(cached.getBodyBytes()))
+                .build();
+    }
+
+    private static Flux<DataBuffer> body(byte[] bytes) {
+        return Flux.defer(() -> Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(bytes)));
+    }
+}
@@ -7,6 +7,12 @@ import java.util.Arrays;
  */
 public class DiskCachingHint {
 
+    /**
+     * Name of the WebClient request attribute carrying the hint, since a thread-local
+     * does not follow a reactive request across threads.
+     */
+    public static final String ATTRIBUTE = DiskCachingHint.class.getName();
+
     private static final ThreadLocal<String> hint = new ThreadLocal<>();
 
     /**
@@ -0,0 +1,20 @@
+package io.github.followsclosely.toolbox.web.cache;
+
+/**
+ * How the disk cache uses the network.
+ */
+public enum DiskCachingMode {
+    /**
+     * Serve cached entries and fetch (and store) anything missing. This is the default.
+     */
+    READ_THROUGH,
+    /**
+     * Always fetch from the network and overwrite the cached entry, to capture a fresh recording.
+     */
+    RECORD,
+    /**
+     * Never touch the network. The whole cache is loaded into memory up front and a miss fails
+     * with a {@link CacheMissException}. Recorded error responses are replayed regardless of their TTL.
+     */
+    REPLAY_ONLY
+}
@@ -32,6 +32,22 @@ public interface ApiRateLimiter {
      */
     void waitAsNeeded();
 
+    /**
+     * Reserves the next call slot without blocking and returns how long the caller must wait before
+     * making the call. The caller is expected to wait with a timer rather than a sleeping thread,
+     * and to call {@link #resetLastCallTime()} once the call has been made.
+     * <p>
+     * The default implementation blocks in {@link #waitAsNeeded()} and returns 0; implementations
+     * used from non-blocking code should override it.
+     * </p>
+     *
+     * @return The number of milliseconds to wait before making the call.
+     */
+    default long reserveDelay() {
+        waitAsNeeded();
+        return 0;
+    }
+
     /**
      * Resets the last call time to the current system time.
      * This can be used to indicate that a call has just been made,
@@ -0,0 +1,43 @@
+package io.github.followsclosely.toolbox.web.limiter;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * The WebClient counterpart of {@link ApiRateLimiterClientHttpRequestInterceptor}. It enforces API rate
+ * limiting using the provided ApiRateLimiter, delaying the exchange with a timer instead of sleeping,
+ * so no event-loop thread is blocked while waiting.
+ *
+ * @see ApiRateLimiter#reserveDelay()
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ApiRateLimiterExchangeFilterFunction implements ExchangeFilterFunction {
+
+    private final @NonNull ApiRateLimiter rateLimiter;
+
+    public ApiRateLimiterExchangeFilterFunction(ApiRateLimiterConfiguration configuration) {
+        rateLimiter = new GenericApiRateLimiter(configuration);
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return Mono.defer(() -> {
+            long delay = rateLimiter.reserveDelay();
+            // Record the call before the response goes downstream, as the blocking interceptor does
+            Mono<ClientResponse> exchange = next.exchange(request)
+                    .doOnTerminate(rateLimiter::resetLastCallTime)
+                    .doOnCancel(rateLimiter::resetLastCallTime);
+            return delay > 0 ? Mono.delay(Duration.ofMillis(delay)).then(exchange) : exchange;
+        });
+    }
+
+}
@@ -98,19 +98,10 @@ public final class GenericApiRateLimiter implements ApiRateLimiter {
      * Thread-safe via AtomicLong fields.
      */
     public void waitAsNeeded() {
-        totalCallsMade.incrementAndGet();
-        long currentTime = System.currentTimeMillis();
-        long timeSinceLastCall = currentTime - lastCallTime.get();
-
-        long delayNeeded = minDelay + borrowedMillis.get();
-        if (timeSinceLastCall < delayNeeded) {
-            long timeToWait = delayNeeded - timeSinceLastCall;
+        long timeToWait = reserveDelay();
+        if (timeToWait > 0) {
             try {
-                long timeToWaitPlus = (timeToWait + ((long) (Math.random() * minDelayBonus)));
-                log.info("Call-{}: Need to wait {}ms, but waiting for {}ms to enforce the {}ms delay (plus {}ms)...", totalCallsMade.get(), timeToWait, timeToWaitPlus, minDelay, timeToWaitPlus - timeToWait);
-                Thread.sleep(timeToWaitPlus);
-                borrowedMillis.set(0);
-                lastCallTime.set(System.currentTimeMillis());
+                Thread.sleep(timeToWait);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 log.error("The wait was interrupted.");
@@ -119,12 +110,43 @@ public final class GenericApiRateLimiter implements ApiRateLimiter {
 
     }
 
+    /**
+     * Computes the wait needed to enforce the configured minimum delay since the last call,
+     * including any borrowed time and a random bonus, without sleeping.
+     * Every call claims its own slot by moving the last call time to the moment it may proceed,
+     * so concurrent callers are queued behind each other even when the limiter is idle.
+     * Thread-safe via a compare-and-set loop on the last call time.
+     *
+     * @return The number of milliseconds to wait before making the call.
+     */
+    @Override
+    public long reserveDelay() {
+        long callNumber = totalCallsMade.incrementAndGet();
+        long bonus = (long) (Math.random() * minDelayBonus);
+        while (true) {
+            long currentTime = System.currentTimeMillis();
+            long last = lastCallTime.get();
+            long borrowed = borrowedMillis.get();
+            long slot = Math.max(currentTime, last + minDelay + borrowed + bonus);
+            if (lastCallTime.compareAndSet(last, slot)) {
+                // Only give back what was consumed, a concurrent borrow() applies to the next caller
+                borrowedMillis.addAndGet(-borrowed);
+                long timeToWait = slot - currentTime;
+                if (timeToWait > 0) {
+                    log.info("Call-{}: Waiting {}ms to enforce the {}ms delay (plus {}ms borrowed, {}ms bonus)...", callNumber, timeToWait, minDelay, borrowed, bonus);
+                }
+                return timeToWait;
+            }
+        }
+    }
+
     /**
      * Resets the last call time to the current system time.
      * This can be used to indicate that a call has just been made,
      * effectively starting the wait timer anew.
+     * Slots already reserved by other callers are kept, so the last call time never moves backwards.
      */
     public void resetLastCallTime() {
-        lastCallTime.getAndSet(System.currentTimeMillis());
+        lastCallTime.accumulateAndGet(System.currentTimeMillis(), Math::max);
     }
 }
@@ -0,0 +1,77 @@
+package io.github.followsclosely.toolbox.web.retry;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps retries as a fraction of overall traffic, so a struggling upstream is not hit with a
+ * multiple of its normal load. Every request deposits {@code ratio} of a retry into the budget
+ * and every retry withdraws a whole one. The balance never exceeds {@code burst} retries.
+ * Thread-safe via an AtomicLong balance.
+ */
+public final class RetryBudget {
+
+    /**
+     * The balance is kept in thousandths of a retry so fractional deposits stay exact.
+     */
+    private static final long SCALE = 1000;
+
+    private final long deposit;
+    private final long capacity;
+
+    /**
+     * Current balance, in thousandths of a retry.
+     */
+    private final AtomicLong balance;
+
+    /**
+     * Constructs a budget using the provided configuration.
+     *
+     * @param configuration The retry configuration.
+     * @see RetryConfiguration
+     */
+    public RetryBudget(RetryConfiguration configuration) {
+        this(configuration.getRetryBudgetRatio(), configuration.getRetryBudgetBurst());
+    }
+
+    /**
+     * Constructs a budget that starts full.
+     *
+     * @param ratio Retries allowed per request, e.g. 0.1 for 10%.
+     * @param burst Maximum number of retries that can accumulate.
+     */
+    public RetryBudget(double ratio, int burst) {
+        this.deposit = Math.round(ratio * SCALE);
+        this.capacity = burst * SCALE;
+        this.balance = new AtomicLong(capacity);
+    }
+
+    /**
+     * Records a request, adding its share to the budget.
+     */
+    public void recordRequest() {
+        balance.accumulateAndGet(deposit, (current, amount) -> Math.min(capacity, current + amount));
+    }
+
+    /**
+     * Withdraws one retry from the budget.
+     *
+     * @return true if the retry may proceed, false if the budget is exhausted.
+     */
+    public boolean tryAcquireRetry() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - SCALE));
+        return true;
+    }
+
+    /**
+     * @return The number of whole retries currently available.
+     */
+    public long getAvailableRetries() {
+        return balance.get() / SCALE;
+    }
+}
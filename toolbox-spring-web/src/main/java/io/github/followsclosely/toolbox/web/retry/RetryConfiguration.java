@@ -0,0 +1,23 @@
+package io.github.followsclosely.toolbox.web.retry;
+
+import lombok.Data;
+
+@Data
+public class RetryConfiguration {
+    private boolean enabled = true;
+    /**
+     * Total attempts per request, including the first one.
+     */
+    private int maxAttempts = 3;
+    private long initialBackoffMs = 500;
+    private long maxBackoffMs = 30_000;
+    private double backoffMultiplier = 2.0;
+    /**
+     * Retries allowed as a fraction of requests, e.g. 0.1 allows one retry per ten requests.
+     */
+    private double retryBudgetRatio = 0.1;
+    /**
+     * Maximum number of retries the budget can accumulate, and the number available at start up.
+     */
+    private int retryBudgetBurst = 10;
+}
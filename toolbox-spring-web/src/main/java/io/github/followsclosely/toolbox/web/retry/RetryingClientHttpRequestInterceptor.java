@@ -0,0 +1,191 @@
+package io.github.followsclosely.toolbox.web.retry;
+
+import io.github.followsclosely.toolbox.web.limiter.ApiRateLimiter;
+import io.github.followsclosely.toolbox.web.limiter.ApiRateLimiterConfiguration;
+import io.github.followsclosely.toolbox.web.limiter.GenericApiRateLimiter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A ClientHttpRequestInterceptor that retries idempotent requests after transient failures
+ * (I/O errors, 429, 502, 503 and 504) using jittered exponential backoff.
+ * <p>
+ * A {@code Retry-After} header takes precedence over the computed backoff; if it asks for longer
+ * than the maximum backoff the response is returned as is. Retries are capped by a {@link RetryBudget},
+ * which can be shared between interceptors to cap retries across all traffic.
+ * </p>
+ * <p>
+ * When an ApiRateLimiter is given, every retry goes through it: the retry waits for both its backoff and
+ * its turn, and the backoff is borrowed from the limiter so other callers sharing it slow down too.
+ * Register this interceptor last, as Spring does not run the remaining interceptors again for a retry.
+ * </p>
+ */
+@Slf4j
+public class RetryingClientHttpRequestInterceptor implements ClientHttpRequestInterceptor {
+
+    private static final Set<HttpMethod> IDEMPOTENT_METHODS = Set.of(
+            HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS, HttpMethod.PUT, HttpMethod.DELETE, HttpMethod.TRACE);
+
+    private static final Set<Integer> RETRYABLE_STATUS_CODES = Set.of(
+            HttpStatus.TOO_MANY_REQUESTS.value(),
+            HttpStatus.BAD_GATEWAY.value(),
+            HttpStatus.SERVICE_UNAVAILABLE.value(),
+            HttpStatus.GATEWAY_TIMEOUT.value());
+
+    private final RetryConfiguration configuration;
+    private final ApiRateLimiter rateLimiter;
+    private final RetryBudget retryBudget;
+
+    public RetryingClientHttpRequestInterceptor(RetryConfiguration configuration) {
+        this(configuration, (ApiRateLimiter) null);
+    }
+
+    public RetryingClientHttpRequestInterceptor(RetryConfiguration configuration, ApiRateLimiterConfiguration rateConfig) {
+        this(configuration, new GenericApiRateLimiter(rateConfig));
+    }
+
+    public RetryingClientHttpRequestInterceptor(RetryConfiguration configuration, ApiRateLimiter rateLimiter) {
+        this(configuration, rateLimiter, new RetryBudget(configuration));
+    }
+
+    /**
+     * @param configuration The retry configuration.
+     * @param rateLimiter   The limiter every retry goes through, or null to simply sleep between attempts.
+     * @param retryBudget   The budget to draw retries from, possibly shared with other interceptors.
+     */
+    public RetryingClientHttpRequestInterceptor(
+            @NonNull RetryConfiguration configuration,
+            ApiRateLimiter rateLimiter,
+            @NonNull RetryBudget retryBudget) {
+        this.configuration = configuration;
+        this.rateLimiter = rateLimiter;
+        this.retryBudget = retryBudget;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        retryBudget.recordRequest();
+        if (!configuration.isEnabled() || !IDEMPOTENT_METHODS.contains(request.getMethod())) {
+            return execution.execute(request, body);
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            ClientHttpResponse response;
+            try {
+                response = execute(request, body, execution, attempt);
+            } catch (IOException e) {
+                long backoff = backoff(attempt);
+                if (!mayRetry(request, attempt, backoff)) {
+                    throw e;
+                }
+                log.info("Attempt {} of {} {} failed ({}), retrying in {}ms", attempt, request.getMethod(), request.getURI(), e.getMessage(), backoff);
+                awaitRetry(backoff);
+                continue;
+            }
+
+            if (!RETRYABLE_STATUS_CODES.contains(response.getStatusCode().value())) {
+                return response;
+            }
+
+            long backoff = retryAfter(response.getHeaders(), backoff(attempt));
+            if (!mayRetry(request, attempt, backoff)) {
+                return response;
+            }
+            log.info("Attempt {} of {} {} returned {}, retrying in {}ms", attempt, request.getMethod(), request.getURI(), response.getStatusCode().value(), backoff);
+            response.close();
+            awaitRetry(backoff);
+        }
+    }
+
+    private ClientHttpResponse execute(HttpRequest request, byte[] body, ClientHttpRequestExecution execution, int attempt) throws IOException {
+        if (attempt == 1 || rateLimiter == null) {
+            return execution.execute(request, body);
+        }
+        try {
+            return execution.execute(request, body);
+        } finally {
+            rateLimiter.resetLastCallTime();
+        }
+    }
+
+    private boolean mayRetry(HttpRequest request, int attempt, long backoff) {
+        if (attempt >= configuration.getMaxAttempts() || backoff > configuration.getMaxBackoffMs()) {
+            return false;
+        }
+        if (!retryBudget.tryAcquireRetry()) {
+            log.warn("Retry budget exhausted, not retrying {} {}", request.getMethod(), request.getURI());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Waits out the backoff before the next attempt. With a rate limiter the retry also reserves its own
+     * slot and waits for whichever is later, so it is accounted for like any other call. The backoff is
+     * then borrowed to slow down the other callers sharing the limiter, but this retry never relies on it.
+     */
+    private void awaitRetry(long backoff) throws InterruptedIOException {
+        long delay = backoff;
+        if (rateLimiter != null) {
+            delay = Math.max(backoff, rateLimiter.reserveDelay());
+            rateLimiter.borrow(backoff);
+        }
+
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+
+    /**
+     * Exponential backoff with equal jitter: half of the delay is fixed, the other half random,
+     * so concurrent callers spread out without retrying immediately.
+     */
+    long backoff(int attempt) {
+        double exponential = configuration.getInitialBackoffMs() * Math.pow(configuration.getBackoffMultiplier(), attempt - 1);
+        long delay = (long) Math.min(configuration.getMaxBackoffMs(), exponential);
+        long half = delay / 2;
+        return half + ThreadLocalRandom.current().nextLong(delay - half + 1);
+    }
+
+    /**
+     * Reads a Retry-After header given either as delay-seconds or as an HTTP-date.
+     *
+     * @return The requested delay in milliseconds, or the fallback if there is no usable header.
+     */
+    static long retryAfter(HttpHeaders headers, long fallback) {
+        String value = headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            // Not delay-seconds, try an HTTP-date
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, date.toInstant().toEpochMilli() - System.currentTimeMillis());
+        } catch (DateTimeParseException e) {
+            log.debug("Ignoring unparsable Retry-After header: {}", value);
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package io.github.followsclosely.toolbox.web.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DiskCachePackTest {
+    private Path tempDir;
+    private Path sourceDir;
+    private Path packFile;
+
+    private final byte[] json = "{\"results\":[]}".repeat(100).getBytes(StandardCharsets.UTF_8);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("cache-test");
+        sourceDir = tempDir.resolve("source");
+        packFile = tempDir.resolve("cache.pack");
+
+        DiskCacheStore store = new DiskCacheStore(DiskCachingConfiguration.forDirectory(sourceDir.toString()));
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.CONTENT_TYPE, "application/json");
+        store.write("sets/10001", HttpStatus.OK, headers, json);
+        store.write("sets/10002", HttpStatus.OK, headers, json);
+        store.write("sets/missing", HttpStatus.NOT_FOUND, headers, new byte[0]);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (var walk = Files.walk(tempDir)) {
+            walk.map(Path::toFile)
+                    .sorted((a, b) -> -a.compareTo(b))
+                    .forEach(f -> {
+                        if (!f.delete()) {
+                            f.deleteOnExit();
+                        }
+                    });
+        }
+    }
+
+    @Test
+    void testExportAndMount() throws IOException {
+        Path uncompressed = tempDir.resolve("uncompressed.pack");
+        assertEquals(3, DiskCachePack.export(sourceDir, uncompressed, false));
+        assertEquals(3, DiskCachePack.export(sourceDir, packFile, true));
+
+        // Identical bodies are stored once, and compression shrinks them further
+        assertTrue(Files.size(uncompressed) < 2L * json.length, "Identical bodies should be stored once");
+        assertTrue(Files.size(packFile) < Files.size(uncompressed), "Compressed pack should be smaller");
+
+        DiskCachePack pack = DiskCachePack.mount(packFile);
+        assertEquals(3, pack.size());
+        DiskCachePack.Entry entry = pack.find("sets/10002");
+        assertNotNull(entry);
+        assertArrayEquals(json, pack.read(entry));
+        assertEquals("application/json", entry.toProperties().getProperty(HttpHeaders.CONTENT_TYPE));
+        assertEquals("404", pack.find("sets/missing").toProperties().getProperty(DiskCacheStore.STATUS));
+        assertNull(pack.find("sets/10003"));
+    }
+
+    @Test
+    void testExportRejectsMissingDirectory() {
+        Path missing = tempDir.resolve("mistyped");
+        assertThrows(NoSuchFileException.class, () -> DiskCachePack.export(missing, packFile, false));
+        assertFalse(Files.exists(missing));
+        assertFalse(Files.exists(packFile));
+    }
+
+    @Test
+    void testExportLoadsSharedBlobsLazily() throws IOException {
+        DiskCachingConfiguration configuration = DiskCachingConfiguration.forDirectory(tempDir.resolve("addressed").toString());
+        configuration.setContentAddressed(true);
+        DiskCacheStore store = new DiskCacheStore(configuration);
+        store.write("sets/10001", HttpStatus.OK, new HttpHeaders(), json);
+        store.write("sets/10002", HttpStatus.OK, new HttpHeaders(), json);
+
+        AtomicInteger loads = new AtomicInteger();
+        store.forEachEntry((cacheKey, headerProps, bodyDigest, body) -> {
+            assertNotNull(bodyDigest);
+            if (loads.get() == 0) {
+                assertArrayEquals(json, body.load());
+                loads.incrementAndGet();
+            }
+        });
+        assertEquals(1, loads.get());
+
+        assertEquals(2, DiskCachePack.export(tempDir.resolve("addressed"), packFile, true));
+        DiskCachePack pack = DiskCachePack.mount(packFile);
+        assertEquals(pack.find("sets/10001").offset(), pack.find("sets/10002").offset());
+    }
+
+    @Test
+    void testImportInto() throws IOException {
+        DiskCachePack.export(sourceDir, packFile, false);
+
+        DiskCachingConfiguration target = DiskCachingConfiguration.forDirectory(tempDir.resolve("target").toString());
+        target.setContentAddressed(true);
+        assertEquals(3, DiskCachePack.mount(packFile).importInto(target));
+
+        DiskCacheStore store = new DiskCacheStore(target);
+        CachedClientHttpResponse imported = store.read("sets/10001");
+        assertNotNull(imported);
+        assertArrayEquals(json, imported.getBodyBytes());
+        assertEquals(HttpStatus.NOT_FOUND, store.read("sets/missing").getStatusCode());
+    }
+
+    @Test
+    void testMountedPackServesHitsAndReplays() throws IOException, URISyntaxException {
+        DiskCachePack.export(sourceDir, packFile, true);
+
+        DiskCachingConfiguration configuration = DiskCachingConfiguration.forDirectory(tempDir.resolve("empty").toString());
+        configuration.setPackFile(packFile.toString());
+        configuration.setMode(DiskCachingMode.REPLAY_ONLY);
+        DiskCachingClientHttpRequestInterceptor interceptor = new DiskCachingClientHttpRequestInterceptor(configuration);
+
+        ClientHttpRequestExecution execution = mock(ClientHttpRequestExecution.class);
+
+        DiskCachingHint.set("sets", "10001");
+        try (ClientHttpResponse response = interceptor.intercept(request(), new byte[0], execution)) {
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            assertEquals("application/json", response.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE));
+            assertArrayEquals(json, response.getBody().readAllBytes());
+        } finally {
+            DiskCachingHint.clear();
+        }
+
+        DiskCachingHint.set("sets", "10003");
+        try {
+            assertThrows(CacheMissException.class, () -> interceptor.intercept(request(), new byte[0], execution));
+        } finally {
+            DiskCachingHint.clear();
+        }
+        verifyNoInteractions(execution);
+    }
+
+    @Test
+    void testDirectoryEntriesOverrideMountedPack() throws IOException {
+        DiskCachePack.export(sourceDir, packFile, true);
+
+        DiskCachingConfiguration configuration = DiskCachingConfiguration.forDirectory(tempDir.resolve("overlay").toString());
+        configuration.setPackFile(packFile.toString());
+        DiskCacheStore store = new DiskCacheStore(configuration);
+        assertArrayEquals(json, store.read("sets/10001").getBodyBytes());
+
+        byte[] updated = "{\"results\":[1]}".getBytes(StandardCharsets.UTF_8);
+        store.write("sets/10001", HttpStatus.OK, new HttpHeaders(), updated);
+        assertArrayEquals(updated, store.read("sets/10001").getBodyBytes());
+        assertArrayEquals(json, store.read("sets/10002").getBodyBytes());
+    }
+
+    @Test
+    void testMountRejectsOtherFiles() throws IOException {
+        Files.writeString(packFile, "not a pack, just some text that is long enough");
+        assertThrows(IOException.class, () -> DiskCachePack.mount(packFile));
+    }
+
+    @Test
+    void testRejectsKeysOutsideTheCacheDirectory() throws IOException {
+        writePack(packFile, "sets/forged");
+        DiskCachePack valid = DiskCachePack.mount(packFile);
+        assertArrayEquals(json, valid.read(valid.find("sets/forged")));
+
+        for (String key : new String[]{"../escaped", "sets/../../escaped", "/tmp/escaped", ".blobs/ab/escaped"}) {
+            Path forged = tempDir.resolve("forged.pack");
+            writePack(forged, key);
+            assertThrows(IOException.class, () -> DiskCachePack.mount(forged), key);
+
+            DiskCacheStore store = new DiskCacheStore(DiskCachingConfiguration.forDirectory(sourceDir.toString()));
+            assertThrows(IOException.class, () -> store.publish(key, new Properties(), json, false), key);
+        }
+        assertFalse(Files.exists(tempDir.resolve("escaped" + DiskCacheStore.HEADERS_SUFFIX)));
+    }
+
+    @Test
+    void testMountRejectsTamperedPacks() throws IOException {
+        int header = 16;
+        int index = header + json.length;
+        long[][] tampered = {
+                // offset, storedLength, length, keyLength, indexOffset
+                {header - 1, json.length, json.length, -1, index},
+                {header + 1, json.length, json.length, -1, index},
+                {header, json.length + 1, json.length + 1, -1, index},
+                {header, json.length, json.length - 1, -1, index},
+                {header, -1, json.length, -1, index},
+                {header, 1, Integer.MAX_VALUE, -1, index},
+                {header, json.length, json.length, Integer.MAX_VALUE, index},
+                {header, json.length, json.length, -1, index + 1000},
+                {header, json.length, json.length, -1, header - 1},
+                {header, json.length, json.length, -1, Long.MAX_VALUE},
+        };
+        for (long[] values : tampered) {
+            writePack(packFile, "sets/forged", values[0], (int) values[1], (int) values[2], (int) values[3], values[4]);
+            IOException error = assertThrows(IOException.class, () -> DiskCachePack.mount(packFile), Arrays.toString(values));
+            assertTrue(error.getMessage().startsWith("Corrupt cache pack"), error.getMessage());
+        }
+
+        // Truncated packs lose their trailer
+        writePack(packFile, "sets/forged");
+        byte[] bytes = Files.readAllBytes(packFile);
+        Files.write(packFile, Arrays.copyOf(bytes, bytes.length - 4));
+        assertThrows(IOException.class, () -> DiskCachePack.mount(packFile));
+    }
+
+    /**
+     * Writes a minimal uncompressed pack holding a single entry, bypassing the key checks of export.
+     */
+    private void writePack(Path file, String key) throws IOException {
+        writePack(file, key, 16, json.length, json.length, -1, 16 + json.length);
+    }
+
+    /**
+     * @param keyLength The key length to record, or -1 for the actual length.
+     */
+    private void writePack(Path file, String key, long offset, int storedLength, int length, int keyLength, long indexOffset) throws IOException {
+        byte[] magic = "TBXPACK1".getBytes(StandardCharsets.US_ASCII);
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.write(magic);
+            out.writeInt(1);
+            out.writeInt(0);
+            out.write(json);
+            out.writeInt(1);
+            out.writeInt(keyLength < 0 ? keyBytes.length : keyLength);
+            out.write(keyBytes);
+            out.writeInt(0);
+            out.writeLong(offset);
+            out.writeInt(storedLength);
+            out.writeInt(length);
+            out.writeLong(indexOffset);
+            out.write(magic);
+        }
+    }
+
+    private static HttpRequest request() throws URISyntaxException {
+        HttpRequest request = mock(HttpRequest.class);
+        when(request.getMethod()).thenReturn(HttpMethod.GET);
+        when(request.getURI()).thenReturn(new URI("https://api.example.com/sets/10001"));
+        return request;
+    }
+}
@@ -0,0 +1,154 @@
+package io.github.followsclosely.toolbox.web.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class DiskCacheStoreTest {
+    private Path tempDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("cache-test");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (var walk = Files.walk(tempDir)) {
+            walk.map(Path::toFile)
+                    .sorted((a, b) -> -a.compareTo(b))
+                    .forEach(f -> {
+                        if (!f.delete()) {
+                            f.deleteOnExit();
+                        }
+                    });
+        }
+    }
+
+    @Test
+    void testConcurrentWritersNeverProduceTornEntries() throws Exception {
+        assertNoTornEntries(false, false);
+    }
+
+    @Test
+    void testConcurrentWritersNeverProduceTornEntriesContentAddressed() throws Exception {
+        assertNoTornEntries(true, false);
+    }
+
+    @Test
+    void testWritersOfSeparateStoresOnOneDirectoryNeverProduceTornEntries() throws Exception {
+        assertNoTornEntries(false, true);
+    }
+
+    @Test
+    void testWriteLeavesNoTempFiles() throws IOException {
+        DiskCacheStore store = new DiskCacheStore(DiskCachingConfiguration.forDirectory(tempDir.toString()));
+        store.write("sets/10001", HttpStatus.OK, new HttpHeaders(), "{}".getBytes(StandardCharsets.UTF_8));
+
+        try (Stream<Path> walk = Files.walk(tempDir)) {
+            assertTrue(walk.noneMatch(p -> p.toString().endsWith(".tmp")));
+        }
+        assertNotNull(store.read("sets/10001"));
+    }
+
+    @Test
+    void testEntriesGetDefaultFilePermissions() throws IOException {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        DiskCachingConfiguration configuration = DiskCachingConfiguration.forDirectory(tempDir.toString());
+        configuration.setContentAddressed(true);
+        DiskCacheStore store = new DiskCacheStore(configuration);
+        store.write("sets/10001", HttpStatus.OK, new HttpHeaders(), "{}".getBytes(StandardCharsets.UTF_8));
+        Path plain = Files.write(tempDir.resolve("plain.json"), new byte[0]);
+
+        Set<PosixFilePermission> expected = Files.getPosixFilePermissions(plain);
+        try (Stream<Path> walk = Files.walk(tempDir)) {
+            for (Path file : walk.filter(Files::isRegularFile).toList()) {
+                assertEquals(expected, Files.getPosixFilePermissions(file), file.toString());
+            }
+        }
+    }
+
+    /**
+     * Writers repeatedly replace one key with bodies whose Content-Type names the writer and round,
+     * while readers check every entry they see pairs the body with its own headers.
+     *
+     * @param storePerWriter Whether each writer uses its own store on the directory, as the blocking and
+     *                       reactive caches do when they share one.
+     */
+    private void assertNoTornEntries(boolean contentAddressed, boolean storePerWriter) throws Exception {
+        DiskCachingConfiguration configuration = DiskCachingConfiguration.forDirectory(tempDir.toString());
+        configuration.setContentAddressed(contentAddressed);
+        DiskCacheStore store = new DiskCacheStore(configuration);
+
+        int writers = 4;
+        int readers = 4;
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicInteger reads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(writers + readers);
+        try {
+            List<Future<?>> writerFutures = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                DiskCacheStore writerStore = storePerWriter ? new DiskCacheStore(configuration) : store;
+                writerFutures.add(executor.submit(() -> {
+                    for (int round = 0; round < 100; round++) {
+                        String version = writer + "-" + round;
+                        HttpHeaders headers = new HttpHeaders();
+                        headers.set(HttpHeaders.CONTENT_TYPE, "text/plain;v=" + version);
+                        writerStore.write("shared", HttpStatus.OK, headers, ("payload " + version).repeat(50 + round).getBytes(StandardCharsets.UTF_8));
+                    }
+                    return null;
+                }));
+            }
+
+            List<Future<?>> readerFutures = new ArrayList<>();
+            for (int r = 0; r < readers; r++) {
+                readerFutures.add(executor.submit(() -> {
+                    while (writing.get()) {
+                        CachedClientHttpResponse entry = store.read("shared");
+                        if (entry != null) {
+                            String version = entry.getHeaders().getContentType().getParameter("v");
+                            String body = new String(entry.getBodyBytes(), StandardCharsets.UTF_8);
+                            assertTrue(body.startsWith("payload " + version + "payload " + version), "Body does not match headers " + version);
+                            reads.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<?> future : writerFutures) {
+                future.get();
+            }
+            writing.set(false);
+            for (Future<?> future : readerFutures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(reads.get() > 0);
+        assertNotNull(store.read("shared"), "The last write should leave a readable entry");
+    }
+}
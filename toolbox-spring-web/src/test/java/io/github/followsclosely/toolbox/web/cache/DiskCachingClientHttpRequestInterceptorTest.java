@@ -18,6 +18,8 @@ import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -84,4 +86,251 @@ class DiskCachingClientHttpRequestInterceptorTest {
         }
         verify(execution, never()).execute(any(), any());
     }
+
+    @Test
+    void testContentAddressedStoresIdenticalBodiesOnce() throws IOException, URISyntaxException {
+        DiskCachingConfiguration configuration = new DiskCachingConfiguration();
+        configuration.setDirectory(tempDir.toString());
+        configuration.setContentAddressed(true);
+        interceptor = new DiskCachingClientHttpRequestInterceptor(configuration);
+
+        byte[] responseBody = "[]".getBytes(StandardCharsets.UTF_8);
+        ClientHttpRequestExecution execution = mock(ClientHttpRequestExecution.class);
+        when(execution.execute(any(), any())).thenAnswer(invocation -> okResponse(responseBody));
+
+        HttpRequest page1 = request("http://example.com/api/data?page=1");
+        HttpRequest page2 = request("http://example.com/api/data?page=2");
+        interceptor.intercept(page1, new byte[0], execution).close();
+        interceptor.intercept(page2, new byte[0], execution).close();
+        verify(execution, times(2)).execute(any(), any());
+
+        assertEquals(1, countBlobs());
+
+        // Both keys are served from the shared blob
+        reset(execution);
+        try (ClientHttpResponse result = interceptor.intercept(page2, new byte[0], execution)) {
+            assertEquals("application/json", result.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE));
+            assertNull(result.getHeaders().getFirst(DiskCacheStore.BODY_DIGEST));
+            assertArrayEquals(responseBody, StreamUtils.copyToByteArray(result.getBody()));
+        }
+        verify(execution, never()).execute(any(), any());
+    }
+
+    @Test
+    void testCollectGarbageRemovesUnreferencedBlobs() throws IOException, URISyntaxException {
+        DiskCachingConfiguration configuration = new DiskCachingConfiguration();
+        configuration.setDirectory(tempDir.toString());
+        configuration.setContentAddressed(true);
+        interceptor = new DiskCachingClientHttpRequestInterceptor(configuration);
+
+        ClientHttpRequestExecution execution = mock(ClientHttpRequestExecution.class);
+        when(execution.execute(any(), any()))
+                .thenAnswer(invocation -> okResponse("kept".getBytes(StandardCharsets.UTF_8)))
+                .thenAnswer(invocation -> okResponse("orphaned".getBytes(StandardCharsets.UTF_8)));
+
+        interceptor.intercept(request("http://example.com/api/kept"), new byte[0], execution).close();
+        interceptor.intercept(request("http://example.com/api/orphaned"), new byte[0], execution).close();
+        assertEquals(2, countBlobs());
+
+        // Drop the entry that references the second blob
+        try (Stream<Path> walk = Files.walk(tempDir)) {
+            for (Path headers : walk.filter(p -> p.toString().endsWith(DiskCacheStore.HEADERS_SUFFIX)).toList()) {
+                if (Files.readString(headers).contains(ContentAddressedBlobStore.digest("orphaned".getBytes(StandardCharsets.UTF_8)))) {
+                    Files.delete(headers);
+                }
+            }
+        }
+
+        assertEquals(0, interceptor.collectGarbage(), "Recent blobs are protected by the grace period");
+        assertEquals(1, interceptor.collectGarbage(Duration.ZERO));
+        assertEquals(1, countBlobs());
+    }
+
+    @Test
+    void testErrorStatusIsReplayedWithinTtl() throws IOException, URISyntaxException {
+        HttpRequest request = request("http://example.com/api/missing");
+        ClientHttpRequestExecution execution = mock(ClientHttpRequestExecution.class);
+        when(execution.execute(any(), any())).thenAnswer(invocation -> response(HttpStatus.NOT_FOUND, "{}".getBytes(StandardCharsets.UTF_8)));
+
+        interceptor.intercept(request, new byte[0], execution).close();
+
+        reset(execution);
+        try (ClientHttpResponse result = interceptor.intercept(request, new byte[0], execution)) {
+            assertEquals(HttpStatus.NOT_FOUND, result.getStatusCode());
+            assertNull(result.getHeaders().getFirst(DiskCacheStore.STATUS));
+        }
+        verify(execution, never()).execute(any(), any());
+    }
+
+    @Test
+    void testErrorStatusIsRefetchedAfterTtl() throws IOException, URISyntaxException {
+        DiskCachingConfiguration configuration = new DiskCachingConfiguration();
+        configuration.setDirectory(tempDir.toString());
+        configuration.setServerErrorTtl(Duration.ofMillis(50));
+        interceptor = new DiskCachingClientHttpRequestInterceptor(configuration);
+
+        HttpRequest request = request("http://example.com/api/flaky");
+        ClientHttpRequestExecution execution = mock(ClientHttpRequestExecution.class);
+        when(execution.execute(any(), any()))
+                .thenAnswer(invocation -> response(HttpStatus.SERVICE_UNAVAILABLE, new byte[0]))
+                .thenAnswer(invocation -> okResponse("recovered".getBytes(StandardCharsets.UTF_8)));
+
+        interceptor.intercept(request, new byte[0], execution).close();
+        try (ClientHttpResponse damped = interceptor.intercept(request, new byte[0], execution)) {
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, damped.getStatusCode());
+        }
+        verify(execution, times(1)).execute(any(), any());
+
+        sleep(100);
+        try (ClientHttpResponse result = interceptor.intercept(request, new byte[0], execution)) {
+            assertEquals(HttpStatus.OK, result.getStatusCode());
+            assertArrayEquals("recovered".getBytes(StandardCharsets.UTF_8), StreamUtils.copyToByteArray(result.getBody()));
+        }
+        verify(execution, times(2)).execute(any(), any());
+    }
+
+    @Test
+    void testZeroTtlDisablesNegativeCaching() throws IOException, URISyntaxException {
+        DiskCachingConfiguration configuration = new DiskCachingConfiguration();
+        configuration.setDirectory(tempDir.toString());
+        configuration.setClientErrorTtl(Duration.ZERO);
+        interceptor = new DiskCachingClientHttpRequestInterceptor(configuration);
+
+        HttpRequest request = request("http://example.com/api/missing");
+        ClientHttpRequestExecution execution = mock(ClientHttpRequestExecution.class);
+        when(execution.execute(any(), any())).thenAnswer(invocation -> response(HttpStatus.NOT_FOUND, new byte[0]));
+
+        interceptor.intercept(request, new byte[0], execution).close();
+        interceptor.intercept(request, new byte[0], execution).close();
+        verify(execution, times(2)).execute(any(), any());
+    }
+
+    @Test
+    void testRecordModeAlwaysFetchesAndOverwrites() throws IOException, URISyntaxException {
+        DiskCachingConfiguration configuration = DiskCachingConfiguration.forDirectory(tempDir.toString());
+        configuration.setMode(DiskCachingMode.RECORD);
+        interceptor = new DiskCachingClientHttpRequestInterceptor(configuration);
+
+        HttpRequest request = request("http://example.com/api/data");
+        ClientHttpRequestExecution execution = mock(ClientHttpRequestExecution.class);
+        when(execution.execute(any(), any()))
+                .thenAnswer(invocation -> okResponse("first".getBytes(StandardCharsets.UTF_8)))
+                .thenAnswer(invocation -> okResponse("second".getBytes(StandardCharsets.UTF_8)));
+
+        interceptor.intercept(request, new byte[0], execution).close();
+        interceptor.intercept(request, new byte[0], execution).close();
+        verify(execution, times(2)).execute(any(), any());
+
+        // Reading through now serves the latest recording
+        interceptor = new DiskCachingClientHttpRequestInterceptor(tempDir.toString());
+        try (ClientHttpResponse result = interceptor.intercept(request, new byte[0], execution)) {
+            assertArrayEquals("second".getBytes(StandardCharsets.UTF_8), StreamUtils.copyToByteArray(result.getBody()));
+        }
+        verify(execution, times(2)).execute(any(), any());
+    }
+
+    @Test
+    void testRecordModeDeletesEntryReplacedByUncachedStatus() throws IOException, URISyntaxException {
+        DiskCachingConfiguration configuration = DiskCachingConfiguration.forDirectory(tempDir.toString());
+        configuration.setMode(DiskCachingMode.RECORD);
+        configuration.setServerErrorTtl(Duration.ZERO);
+        interceptor = new DiskCachingClientHttpRequestInterceptor(configuration);
+
+        HttpRequest request = request("http://example.com/api/data");
+        ClientHttpRequestExecution execution = mock(ClientHttpRequestExecution.class);
+        when(execution.execute(any(), any()))
+                .thenAnswer(invocation -> okResponse("stale".getBytes(StandardCharsets.UTF_8)))
+                .thenAnswer(invocation -> response(HttpStatus.SERVICE_UNAVAILABLE, new byte[0]))
+                .thenAnswer(invocation -> okResponse("fresh".getBytes(StandardCharsets.UTF_8)));
+
+        interceptor.intercept(request, new byte[0], execution).close();
+        interceptor.intercept(request, new byte[0], execution).close();
+
+        // The stale recording is gone, so reading through fetches again
+        interceptor = new DiskCachingClientHttpRequestInterceptor(tempDir.toString());
+        try (ClientHttpResponse result = interceptor.intercept(request, new byte[0], execution)) {
+            assertArrayEquals("fresh".getBytes(StandardCharsets.UTF_8), StreamUtils.copyToByteArray(result.getBody()));
+        }
+        verify(execution, times(3)).execute(any(), any());
+    }
+
+    @Test
+    void testReplayOnlyServesRecordingAndFailsFastOnMiss() throws IOException, URISyntaxException {
+        DiskCachingConfiguration configuration = DiskCachingConfiguration.forDirectory(tempDir.toString());
+        configuration.setContentAddressed(true);
+        configuration.setClientErrorTtl(Duration.ofMillis(1));
+        DiskCachingClientHttpRequestInterceptor recorder = new DiskCachingClientHttpRequestInterceptor(configuration);
+
+        ClientHttpRequestExecution execution = mock(ClientHttpRequestExecution.class);
+        when(execution.execute(any(), any()))
+                .thenAnswer(invocation -> okResponse("sets".getBytes(StandardCharsets.UTF_8)))
+                .thenAnswer(invocation -> response(HttpStatus.NOT_FOUND, new byte[0]));
+
+        HttpRequest hinted = request("http://example.com/api/sets/10001");
+        DiskCachingHint.set("sets", "10001");
+        try {
+            recorder.intercept(hinted, new byte[0], execution).close();
+        } finally {
+            DiskCachingHint.clear();
+        }
+        HttpRequest missing = request("http://example.com/api/missing");
+        recorder.intercept(missing, new byte[0], execution).close();
+        sleep(10);
+
+        configuration.setMode(DiskCachingMode.REPLAY_ONLY);
+        interceptor = new DiskCachingClientHttpRequestInterceptor(configuration);
+        reset(execution);
+
+        DiskCachingHint.set("sets", "10001");
+        try (ClientHttpResponse result = interceptor.intercept(hinted, new byte[0], execution)) {
+            assertEquals(HttpStatus.OK, result.getStatusCode());
+            assertArrayEquals("sets".getBytes(StandardCharsets.UTF_8), StreamUtils.copyToByteArray(result.getBody()));
+        } finally {
+            DiskCachingHint.clear();
+        }
+
+        // Recorded errors are replayed even though their TTL has passed
+        try (ClientHttpResponse result = interceptor.intercept(missing, new byte[0], execution)) {
+            assertEquals(HttpStatus.NOT_FOUND, result.getStatusCode());
+        }
+
+        assertThrows(CacheMissException.class,
+                () -> interceptor.intercept(request("http://example.com/api/unrecorded"), new byte[0], execution));
+        verify(execution, never()).execute(any(), any());
+    }
+
+    private static HttpRequest request(String uri) throws URISyntaxException {
+        HttpRequest request = mock(HttpRequest.class);
+        when(request.getMethod()).thenReturn(HttpMethod.GET);
+        when(request.getURI()).thenReturn(new URI(uri));
+        return request;
+    }
+
+    private static ClientHttpResponse okResponse(byte[] responseBody) throws IOException {
+        return response(HttpStatus.OK, responseBody);
+    }
+
+    private static ClientHttpResponse response(HttpStatus status, byte[] responseBody) throws IOException {
+        ClientHttpResponse response = mock(ClientHttpResponse.class);
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.CONTENT_TYPE, "application/json");
+        when(response.getBody()).thenReturn(new ByteArrayInputStream(responseBody));
+        when(response.getHeaders()).thenReturn(headers);
+        when(response.getStatusCode()).thenReturn(status);
+        return response;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long countBlobs() throws IOException {
+        try (Stream<Path> walk = Files.walk(tempDir.resolve(ContentAddressedBlobStore.DIRECTORY_NAME))) {
+            return walk.filter(Files::isRegularFile).count();
+        }
+    }
 }
\ No newline at end of file
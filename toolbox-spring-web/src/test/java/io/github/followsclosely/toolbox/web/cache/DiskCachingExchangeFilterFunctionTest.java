@@ -0,0 +1,122 @@
+package io.github.followsclosely.toolbox.web.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DiskCachingExchangeFilterFunctionTest {
+    private Path tempDir;
+    private DiskCachingExchangeFilterFunction filter;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("cache-test");
+        filter = new DiskCachingExchangeFilterFunction(tempDir.toString());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (var walk = Files.walk(tempDir)) {
+            walk.map(Path::toFile)
+                    .sorted((a, b) -> -a.compareTo(b))
+                    .forEach(f -> {
+                        if (!f.delete()) {
+                            f.deleteOnExit();
+                        }
+                    });
+        }
+    }
+
+    @Test
+    void testCacheMissAndHit() {
+        ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("http://example.com/api/data")).build();
+        ExchangeFunction next = mock(ExchangeFunction.class);
+        when(next.exchange(any())).thenReturn(Mono.fromSupplier(() -> ClientResponse.create(HttpStatus.NOT_FOUND)
+                .header(HttpHeaders.CONTENT_TYPE, "application/json")
+                .body("response-data")
+                .build()));
+
+        // First call: should be a cache miss (writes to disk)
+        ClientResponse result1 = filter.filter(request, next).block();
+        assertNotNull(result1);
+        assertEquals(HttpStatus.NOT_FOUND, result1.statusCode());
+        assertEquals("response-data", result1.bodyToMono(String.class).block());
+        verify(next, times(1)).exchange(any());
+
+        // Second call: should be a cache hit (reads from disk, does not call next)
+        reset(next);
+        ClientResponse result2 = filter.filter(request, next).block();
+        assertNotNull(result2);
+        assertEquals(HttpStatus.NOT_FOUND, result2.statusCode());
+        assertEquals("application/json", result2.headers().asHttpHeaders().getFirst(HttpHeaders.CONTENT_TYPE));
+        assertEquals("response-data", result2.bodyToMono(String.class).block());
+        verify(next, never()).exchange(any());
+    }
+
+    @Test
+    void testSharesEntriesWithBlockingInterceptor() {
+        ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("http://example.com/api/data"))
+                .attribute(DiskCachingHint.ATTRIBUTE, "sets/10001")
+                .build();
+        ExchangeFunction next = mock(ExchangeFunction.class);
+        when(next.exchange(any())).thenReturn(Mono.just(ClientResponse.create(HttpStatus.OK).body("{}").build()));
+
+        filter.filter(request, next).block();
+
+        assertTrue(Files.exists(tempDir.resolve("sets/10001" + DiskCacheStore.HEADERS_SUFFIX)));
+        assertTrue(Files.exists(tempDir.resolve("sets/10001" + DiskCacheStore.BODY_SUFFIX)));
+    }
+
+    @Test
+    void testHitsDecodeWithConfiguredStrategies() {
+        ExchangeStrategies strategies = ExchangeStrategies.builder()
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(1024 * 1024))
+                .build();
+        filter = new DiskCachingExchangeFilterFunction(
+                DiskCachingConfiguration.forDirectory(tempDir.toString()), null, Schedulers.boundedElastic(), strategies);
+
+        // Larger than the default 256 KiB in-memory limit
+        String large = "x".repeat(300 * 1024);
+        ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("http://example.com/api/large")).build();
+        ExchangeFunction next = mock(ExchangeFunction.class);
+        when(next.exchange(any())).thenReturn(Mono.fromSupplier(() -> ClientResponse.create(HttpStatus.OK, strategies)
+                .body(large)
+                .build()));
+
+        assertEquals(large, filter.filter(request, next).block().bodyToMono(String.class).block());
+        assertEquals(large, filter.filter(request, next).block().bodyToMono(String.class).block());
+        verify(next, times(1)).exchange(any());
+    }
+
+    @Test
+    void testReplayOnlyFailsFastOnMiss() {
+        DiskCachingConfiguration configuration = DiskCachingConfiguration.forDirectory(tempDir.toString());
+        configuration.setMode(DiskCachingMode.REPLAY_ONLY);
+        filter = new DiskCachingExchangeFilterFunction(configuration);
+
+        ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("http://example.com/api/data")).build();
+        ExchangeFunction next = mock(ExchangeFunction.class);
+
+        // block() wraps checked exceptions
+        RuntimeException error = assertThrows(RuntimeException.class, () -> filter.filter(request, next).block());
+        assertInstanceOf(CacheMissException.class, error.getCause());
+        verify(next, never()).exchange(any());
+    }
+}
@@ -0,0 +1,40 @@
+package io.github.followsclosely.toolbox.web.limiter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+class ApiRateLimiterExchangeFilterFunctionTest {
+
+    @Test
+    void filter_reservesDelayAndExecutesRequest() {
+        ApiRateLimiter rateLimiter = mock(ApiRateLimiter.class);
+        when(rateLimiter.reserveDelay()).thenReturn(150L);
+        ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("http://example.com/api/data")).build();
+        ClientResponse response = ClientResponse.create(HttpStatus.OK).build();
+        ExchangeFunction next = mock(ExchangeFunction.class);
+        when(next.exchange(request)).thenReturn(Mono.just(response));
+
+        ApiRateLimiterExchangeFilterFunction filter = new ApiRateLimiterExchangeFilterFunction(rateLimiter);
+        long start = System.currentTimeMillis();
+        ClientResponse actual = filter.filter(request, next).block();
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertSame(response, actual);
+        assertTrue(elapsed >= 150 - 20, "Should delay by the reserved time");
+        verify(rateLimiter, times(1)).reserveDelay();
+        verify(rateLimiter, never()).waitAsNeeded();
+        verify(rateLimiter, times(1)).resetLastCallTime();
+        verify(next, times(1)).exchange(request);
+    }
+}
@@ -2,6 +2,12 @@ package io.github.followsclosely.toolbox.web.limiter;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class GenericApiRateLimiterTest {
@@ -52,4 +58,97 @@ class GenericApiRateLimiterTest {
         long elapsed = System.currentTimeMillis() - start;
         assertTrue(elapsed >= 150 - 20, "Should wait at least the configured delay");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testReserveDelayDoesNotBlockAndQueuesCallers() {
+        GenericApiRateLimiter limiter = new GenericApiRateLimiter(200, 0);
+        limiter.resetLastCallTime();
+        long start = System.currentTimeMillis();
+        long first = limiter.reserveDelay();
+        long second = limiter.reserveDelay();
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue(elapsed < 100, "Reserving should not sleep");
+        assertTrue(first > 150 && first <= 200, "First caller should wait for the delay");
+        assertTrue(second > first + 150, "Second caller should be queued behind the first");
+    }
+
+    @Test
+    void testReserveDelayQueuesConcurrentCallersOnIdleLimiter() throws InterruptedException {
+        GenericApiRateLimiter limiter = new GenericApiRateLimiter(100, 0);
+        int callers = 8;
+        List<Long> delays = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    delays.add(limiter.reserveDelay());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        List<Long> sorted = delays.stream().sorted().toList();
+        assertEquals(callers, sorted.size());
+        assertEquals(0, sorted.get(0), "Only the first caller should proceed immediately");
+        for (int i = 1; i < callers; i++) {
+            assertTrue(sorted.get(i) >= sorted.get(i - 1) + 80, "Each caller should get its own slot: " + sorted);
+        }
+    }
+
+    @Test
+    void testResetDoesNotReleaseReservedSlots() {
+        GenericApiRateLimiter limiter = new GenericApiRateLimiter(1000, 0);
+        long a = limiter.reserveDelay();
+        long b = limiter.reserveDelay();
+        limiter.resetLastCallTime();
+        long c = limiter.reserveDelay();
+        assertEquals(0, a);
+        assertTrue(b > 900, "Second caller should wait for the delay");
+        assertTrue(c > b + 900, "Third caller should be queued behind the second, not share its slot");
+    }
+
+    @Test
+    void testResetInterleavedWithConcurrentReservations() throws InterruptedException {
+        GenericApiRateLimiter limiter = new GenericApiRateLimiter(50, 0);
+        int callers = 8;
+        List<Long> slots = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int round = 0; round < 3; round++) {
+                        long now = System.currentTimeMillis();
+                        slots.add(now + limiter.reserveDelay());
+                        // Each call completes straight away and records itself
+                        limiter.resetLastCallTime();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        List<Long> sorted = slots.stream().sorted().toList();
+        assertEquals(callers * 3, sorted.size());
+        for (int i = 1; i < sorted.size(); i++) {
+            assertTrue(sorted.get(i) >= sorted.get(i - 1) + 40, "Every call should get its own slot: " + sorted);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package io.github.followsclosely.toolbox.web.retry;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryBudgetTest {
+
+    @Test
+    void testStartsWithBurstAndRunsDry() {
+        RetryBudget budget = new RetryBudget(0.1, 2);
+        assertTrue(budget.tryAcquireRetry());
+        assertTrue(budget.tryAcquireRetry());
+        assertFalse(budget.tryAcquireRetry());
+    }
+
+    @Test
+    void testRequestsRefillByRatio() {
+        RetryBudget budget = new RetryBudget(0.25, 1);
+        assertTrue(budget.tryAcquireRetry());
+        for (int i = 0; i < 3; i++) {
+            budget.recordRequest();
+        }
+        assertFalse(budget.tryAcquireRetry(), "Three requests only earn three quarters of a retry");
+        budget.recordRequest();
+        assertTrue(budget.tryAcquireRetry());
+    }
+
+    @Test
+    void testBalanceIsCappedAtBurst() {
+        RetryBudget budget = new RetryBudget(0.5, 3);
+        for (int i = 0; i < 100; i++) {
+            budget.recordRequest();
+        }
+        assertEquals(3, budget.getAvailableRetries());
+    }
+}
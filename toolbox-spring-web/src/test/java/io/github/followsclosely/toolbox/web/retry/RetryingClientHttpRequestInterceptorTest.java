@@ -0,0 +1,198 @@
+package io.github.followsclosely.toolbox.web.retry;
+
+import io.github.followsclosely.toolbox.web.limiter.ApiRateLimiter;
+import io.github.followsclosely.toolbox.web.limiter.GenericApiRateLimiter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RetryingClientHttpRequestInterceptorTest {
+
+    private RetryConfiguration configuration;
+    private HttpRequest request;
+    private ClientHttpRequestExecution execution;
+
+    @BeforeEach
+    void setUp() {
+        configuration = new RetryConfiguration();
+        configuration.setInitialBackoffMs(1);
+        configuration.setMaxBackoffMs(1000);
+
+        request = mock(HttpRequest.class);
+        when(request.getMethod()).thenReturn(HttpMethod.GET);
+        when(request.getURI()).thenReturn(URI.create("http://example.com/api/data"));
+        execution = mock(ClientHttpRequestExecution.class);
+    }
+
+    @Test
+    void testRetriesTransientStatusThroughRateLimiter() throws IOException {
+        ClientHttpResponse unavailable = response(HttpStatus.SERVICE_UNAVAILABLE, new HttpHeaders());
+        ClientHttpResponse ok = response(HttpStatus.OK, new HttpHeaders());
+        when(execution.execute(any(), any())).thenReturn(unavailable, ok);
+        ApiRateLimiter rateLimiter = mock(ApiRateLimiter.class);
+
+        RetryingClientHttpRequestInterceptor interceptor = new RetryingClientHttpRequestInterceptor(configuration, rateLimiter);
+
+        assertSame(ok, interceptor.intercept(request, new byte[0], execution));
+        verify(execution, times(2)).execute(any(), any());
+        verify(unavailable).close();
+        verify(rateLimiter, times(1)).reserveDelay();
+        verify(rateLimiter, times(1)).borrow(anyLong());
+        verify(rateLimiter, never()).waitAsNeeded();
+    }
+
+    @Test
+    void testRetryAfterIsHonouredOnSharedRateLimiter() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "1");
+        ClientHttpResponse unavailable = response(HttpStatus.SERVICE_UNAVAILABLE, headers);
+        ClientHttpResponse ok = response(HttpStatus.OK, new HttpHeaders());
+        long[] attempts = new long[2];
+        when(execution.execute(any(), any())).thenAnswer(invocation -> {
+            if (attempts[0] == 0) {
+                attempts[0] = System.currentTimeMillis();
+                return unavailable;
+            }
+            attempts[1] = System.currentTimeMillis();
+            return ok;
+        });
+        GenericApiRateLimiter shared = new GenericApiRateLimiter(20, 0);
+        // Another caller on a second thread reserves its slot right after the backoff is borrowed
+        ApiRateLimiter rateLimiter = new ApiRateLimiter() {
+            @Override
+            public void borrow(long millis) {
+                shared.borrow(millis);
+                Thread other = new Thread(() -> {
+                    shared.reserveDelay();
+                    shared.resetLastCallTime();
+                });
+                other.start();
+                try {
+                    other.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void waitAsNeeded() {
+                shared.waitAsNeeded();
+            }
+
+            @Override
+            public long reserveDelay() {
+                return shared.reserveDelay();
+            }
+
+            @Override
+            public void resetLastCallTime() {
+                shared.resetLastCallTime();
+            }
+        };
+        RetryingClientHttpRequestInterceptor interceptor = new RetryingClientHttpRequestInterceptor(configuration, rateLimiter);
+
+        assertSame(ok, interceptor.intercept(request, new byte[0], execution));
+        assertTrue(attempts[1] - attempts[0] >= 1000 - 20, "Retry should wait for Retry-After: " + (attempts[1] - attempts[0]) + "ms");
+    }
+
+    @Test
+    void testRetriesIOExceptionUntilMaxAttempts() throws IOException {
+        when(execution.execute(any(), any())).thenThrow(new SocketTimeoutException("timeout"));
+
+        RetryingClientHttpRequestInterceptor interceptor = new RetryingClientHttpRequestInterceptor(configuration);
+
+        assertThrows(SocketTimeoutException.class, () -> interceptor.intercept(request, new byte[0], execution));
+        verify(execution, times(configuration.getMaxAttempts())).execute(any(), any());
+    }
+
+    @Test
+    void testDoesNotRetryNonIdempotentRequests() throws IOException {
+        when(request.getMethod()).thenReturn(HttpMethod.POST);
+        ClientHttpResponse unavailable = response(HttpStatus.SERVICE_UNAVAILABLE, new HttpHeaders());
+        when(execution.execute(any(), any())).thenReturn(unavailable);
+
+        RetryingClientHttpRequestInterceptor interceptor = new RetryingClientHttpRequestInterceptor(configuration);
+
+        assertSame(unavailable, interceptor.intercept(request, new byte[0], execution));
+        verify(execution, times(1)).execute(any(), any());
+    }
+
+    @Test
+    void testRetryAfterBeyondMaxBackoffIsNotRetried() throws IOException {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "120");
+        ClientHttpResponse throttled = response(HttpStatus.TOO_MANY_REQUESTS, headers);
+        when(execution.execute(any(), any())).thenReturn(throttled);
+
+        RetryingClientHttpRequestInterceptor interceptor = new RetryingClientHttpRequestInterceptor(configuration);
+
+        assertSame(throttled, interceptor.intercept(request, new byte[0], execution));
+        verify(execution, times(1)).execute(any(), any());
+    }
+
+    @Test
+    void testExhaustedBudgetStopsRetries() throws IOException {
+        ClientHttpResponse unavailable = response(HttpStatus.SERVICE_UNAVAILABLE, new HttpHeaders());
+        when(execution.execute(any(), any())).thenReturn(unavailable);
+
+        RetryingClientHttpRequestInterceptor interceptor =
+                new RetryingClientHttpRequestInterceptor(configuration, null, new RetryBudget(0, 1));
+
+        interceptor.intercept(request, new byte[0], execution);
+        verify(execution, times(2)).execute(any(), any());
+
+        reset(execution);
+        when(execution.execute(any(), any())).thenReturn(unavailable);
+        interceptor.intercept(request, new byte[0], execution);
+        verify(execution, times(1)).execute(any(), any());
+    }
+
+    @Test
+    void testRetryAfterParsing() {
+        HttpHeaders seconds = new HttpHeaders();
+        seconds.set(HttpHeaders.RETRY_AFTER, "3");
+        assertEquals(3000, RetryingClientHttpRequestInterceptor.retryAfter(seconds, 42));
+
+        HttpHeaders date = new HttpHeaders();
+        date.set(HttpHeaders.RETRY_AFTER, DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now().plusSeconds(30)));
+        long delay = RetryingClientHttpRequestInterceptor.retryAfter(date, 42);
+        assertTrue(delay > 25_000 && delay <= 30_000, "Delay should be about 30 seconds but was " + delay);
+
+        assertEquals(42, RetryingClientHttpRequestInterceptor.retryAfter(new HttpHeaders(), 42));
+    }
+
+    @Test
+    void testBackoffGrowsAndIsCapped() {
+        configuration.setInitialBackoffMs(100);
+        configuration.setMaxBackoffMs(300);
+        RetryingClientHttpRequestInterceptor interceptor = new RetryingClientHttpRequestInterceptor(configuration);
+
+        long first = interceptor.backoff(1);
+        assertTrue(first >= 50 && first <= 100);
+        long second = interceptor.backoff(2);
+        assertTrue(second >= 100 && second <= 200);
+        long capped = interceptor.backoff(10);
+        assertTrue(capped >= 150 && capped <= 300);
+    }
+
+    private static ClientHttpResponse response(HttpStatus status, HttpHeaders headers) throws IOException {
+        ClientHttpResponse response = mock(ClientHttpResponse.class);
+        when(response.getStatusCode()).thenReturn(status);
+        when(response.getHeaders()).thenReturn(headers);
+        return response;
+    }
+}